@@ -4,6 +4,9 @@ import java.util.concurrent.TimeUnit
 /**
  * This Groovy script captures the OS processes as reported by the OS 'ps' command,
  * and adds these as a custom value.
+ *
+ * On Linux, the common-custom-user-data-maven-extension samples the resource usage of the build process tree throughout the
+ * build when the ccud.processSampler system property is set to true, see ccud.processSampler.interval.
  */
 
 BuildScanApi buildScan = session.lookup('com.gradle.maven.extension.api.scan.BuildScanApi')
@@ -25,11 +28,19 @@ static void captureOsProcesses(def api) {
 static String execAndGetStdout(String... args) {
     Process process = args.toList().execute()
     try {
-        def standardText = process.inputStream.withStream { s -> s.getText(Charset.defaultCharset().name()) }
-        def ignore = process.errorStream.withStream { s -> s.getText(Charset.defaultCharset().name()) }
+        // drain both streams concurrently, so the process cannot block on a full pipe, and apply the timeout from launch
+        def standardText = new ByteArrayOutputStream()
+        def ignore = new ByteArrayOutputStream()
+        def standardReader = process.consumeProcessOutputStream(standardText)
+        def errorReader = process.consumeProcessErrorStream(ignore)
 
         def finished = process.waitFor(10, TimeUnit.SECONDS)
-        finished && process.exitValue() == 0 ? trimAtEnd(standardText) : null
+        if (!finished) {
+            process.destroyForcibly()
+        }
+        standardReader.join()
+        errorReader.join()
+        finished && process.exitValue() == 0 ? trimAtEnd(standardText.toString(Charset.defaultCharset().name())) : null
     } finally {
         process.destroyForcibly()
     }
@@ -3,6 +3,9 @@ import java.nio.file.Paths
 /**
  * This Groovy script captures issues found by reporting goals,
  * and adds these as custom values.
+ *
+ * The common-custom-user-data-maven-extension captures the same issues without building the reports in memory
+ * when the ccud.qualityIssues system property is set to true.
  */
 
 BuildScanApi buildScan = session.lookup('com.gradle.maven.extension.api.scan.BuildScanApi')
@@ -0,0 +1,117 @@
+package com.gradle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Captures the output of a process within a fixed byte budget.
+ * <p>
+ * The first bytes of the output are kept in a head buffer and the last bytes in a tail ring buffer, while the bytes in
+ * between are only counted. The text of a capture that exceeded its budget marks where and how many bytes were dropped.
+ * Each thread reuses its capture and read buffers across invocations, so capturing neither allocates per line nor per
+ * process once the buffers of a thread have been created.
+ */
+final class BoundedOutputCapture {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final ThreadLocal<BoundedOutputCapture> CAPTURES = new ThreadLocal<>();
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private int headLength;
+    private int tailEnd; // position in the tail ring buffer after the last byte written
+    private int tailLength;
+    private long totalBytes;
+
+    BoundedOutputCapture(int headBytes, int tailBytes) {
+        this.head = new byte[headBytes];
+        this.tail = new byte[tailBytes];
+    }
+
+    /**
+     * Returns an output processor that captures the output within the given budget, split evenly between the first and
+     * the last bytes of the output.
+     */
+    static ProcessRunner.OutputProcessor<String> processor(int maxBytes) {
+        int headBytes = maxBytes / 2;
+        int tailBytes = maxBytes - headBytes;
+        return output -> {
+            BoundedOutputCapture capture = CAPTURES.get();
+            if (capture == null || capture.head.length != headBytes || capture.tail.length != tailBytes) {
+                capture = new BoundedOutputCapture(headBytes, tailBytes);
+                CAPTURES.set(capture);
+            }
+            capture.reset();
+            capture.readFrom(output);
+            return ProcessRunner.trimAtEnd(capture.toString(Charset.defaultCharset()));
+        };
+    }
+
+    void reset() {
+        headLength = 0;
+        tailEnd = 0;
+        tailLength = 0;
+        totalBytes = 0;
+    }
+
+    void readFrom(InputStream output) throws IOException {
+        int nRead;
+        while ((nRead = output.read(readBuffer)) != -1) {
+            write(readBuffer, 0, nRead);
+        }
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+        totalBytes += length;
+
+        int toHead = Math.min(length, head.length - headLength);
+        System.arraycopy(bytes, offset, head, headLength, toHead);
+        headLength += toHead;
+        offset += toHead;
+        length -= toHead;
+
+        if (length == 0 || tail.length == 0) {
+            return;
+        }
+        if (length >= tail.length) {
+            // only the last bytes fit into the tail
+            System.arraycopy(bytes, offset + length - tail.length, tail, 0, tail.length);
+            tailEnd = 0;
+            tailLength = tail.length;
+            return;
+        }
+        int firstChunk = Math.min(length, tail.length - tailEnd);
+        System.arraycopy(bytes, offset, tail, tailEnd, firstChunk);
+        System.arraycopy(bytes, offset + firstChunk, tail, 0, length - firstChunk);
+        tailEnd = (tailEnd + length) % tail.length;
+        tailLength = Math.min(tail.length, tailLength + length);
+    }
+
+    long getDroppedBytes() {
+        return totalBytes - headLength - tailLength;
+    }
+
+    String toString(Charset charset) {
+        StringBuilder text = new StringBuilder(new String(head, 0, headLength, charset));
+        long droppedBytes = getDroppedBytes();
+        if (droppedBytes > 0) {
+            text.append("\n... ").append(droppedBytes).append(" bytes omitted ...\n");
+        }
+        if (tailLength > 0) {
+            int tailStart = (tailEnd - tailLength + tail.length) % tail.length;
+            if (tailStart + tailLength <= tail.length) {
+                text.append(new String(tail, tailStart, tailLength, charset));
+            } else {
+                byte[] ordered = new byte[tailLength];
+                int firstChunk = tail.length - tailStart;
+                System.arraycopy(tail, tailStart, ordered, 0, firstChunk);
+                System.arraycopy(tail, 0, ordered, firstChunk, tailLength - firstChunk);
+                text.append(new String(ordered, charset));
+            }
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.gradle;
+
+import java.util.function.Consumer;
+
+import static com.gradle.Utils.appendIfMissing;
+import static com.gradle.Utils.urlEncode;
+
+/**
+ * Build-tool-agnostic view of the build scan API, implemented on top of the {@code BuildScanExtension} of the Gradle
+ * plugin and the {@code BuildScanApi} of the Maven extension.
+ */
+public interface BuildScanAdapter {
+
+    void tag(String tag);
+
+    void value(String name, String value);
+
+    void link(String name, String url);
+
+    String getServer();
+
+    void background(Consumer<? super BuildScanAdapter> action);
+
+    default void addCustomValueAndSearchLink(String name, String value) {
+        addCustomValueAndSearchLink(name, name, value);
+    }
+
+    /**
+     * Adds the given custom value and a link to all build scans that have the same custom value.
+     */
+    default void addCustomValueAndSearchLink(String linkLabel, String name, String value) {
+        value(name, value);
+        String server = getServer();
+        if (server != null) {
+            String searchParams = "search.names=" + urlEncode(name) + "&search.values=" + urlEncode(value);
+            String url = appendIfMissing(server, "/") + "scans?" + searchParams + "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
+            link(linkLabel + " build scans", url);
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.gradle;
+
+import java.util.Optional;
+import java.util.Properties;
+
+import static com.gradle.Utils.appendIfMissing;
+import static com.gradle.Utils.urlEncode;
+
+/**
+ * The CI systems supported out of the box.
+ * <p>
+ * Each CI system is detected by a variable whose value is the same for every build, so that detecting it does not make
+ * a per-build value a configuration cache input. Per-build values are only read when capturing the metadata.
+ */
+enum BuiltInCiProvider implements CiProvider {
+
+    GENERIC("CI") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("CI").isPresent() || environment.sysProperty("CI").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            // there is no metadata in common to all CI systems
+        }
+    },
+
+    JENKINS("Jenkins") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("JENKINS_URL").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            captureJenkinsMetadata(environment, buildScan, "Jenkins build");
+        }
+
+        @Override
+        public Optional<String> getBranchName(CiEnvironment environment) {
+            return environment.envVariable("BRANCH_NAME");
+        }
+    },
+
+    HUDSON("Hudson") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            // Jenkins sets the variables of Hudson as well
+            return environment.envVariable("HUDSON_URL").isPresent() && !JENKINS.isDetected(environment);
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            captureJenkinsMetadata(environment, buildScan, "Hudson build");
+        }
+
+        @Override
+        public Optional<String> getBranchName(CiEnvironment environment) {
+            return environment.envVariable("BRANCH_NAME");
+        }
+    },
+
+    TEAM_CITY("TeamCity") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("TEAMCITY_VERSION").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.withProjectProperties(() -> {
+                Optional<String> teamCityConfigFile = environment.projectProperty("teamcity.configuration.properties.file");
+                Optional<String> buildNumber = environment.projectProperty("build.number");
+                Optional<String> buildTypeId = environment.projectProperty("teamcity.buildType.id");
+                if (teamCityConfigFile.isPresent()
+                    && buildNumber.isPresent()
+                    && buildTypeId.isPresent()) {
+                    Properties properties = environment.readPropertiesFile(teamCityConfigFile.get());
+                    String teamCityServerUrl = properties.getProperty("teamcity.serverUrl");
+                    if (teamCityServerUrl != null) {
+                        String buildUrl = appendIfMissing(teamCityServerUrl, "/") + "viewLog.html?buildNumber=" + urlEncode(buildNumber.get()) + "&buildTypeId=" + urlEncode(buildTypeId.get());
+                        buildScan.link("TeamCity build", buildUrl);
+                    }
+                }
+                buildNumber.ifPresent(value ->
+                    buildScan.value("CI build number", value));
+                buildTypeId.ifPresent(value ->
+                    buildScan.addCustomValueAndSearchLink("CI build config", value));
+                environment.projectProperty("agent.name").ifPresent(value ->
+                    buildScan.addCustomValueAndSearchLink("CI agent", value));
+            });
+        }
+
+        @Override
+        public boolean supportsDeferredCapture() {
+            // TeamCity passes its metadata as Gradle project properties
+            return false;
+        }
+    },
+
+    CIRCLE_CI("CircleCI") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("CIRCLECI").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.envVariable("CIRCLE_BUILD_URL").ifPresent(url ->
+                buildScan.link("CircleCI build", url));
+            environment.envVariable("CIRCLE_BUILD_NUM").ifPresent(value ->
+                buildScan.value("CI build number", value));
+            environment.envVariable("CIRCLE_JOB").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI job", value));
+            environment.envVariable("CIRCLE_WORKFLOW_ID").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI workflow", value));
+        }
+    },
+
+    BAMBOO("Bamboo") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("bamboo_planKey").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.envVariable("bamboo_resultsUrl").ifPresent(url ->
+                buildScan.link("Bamboo build", url));
+            environment.envVariable("bamboo_buildNumber").ifPresent(value ->
+                buildScan.value("CI build number", value));
+            environment.envVariable("bamboo_planName").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI plan", value));
+            environment.envVariable("bamboo_buildPlanName").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI build plan", value));
+            environment.envVariable("bamboo_agentId").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI agent", value));
+        }
+    },
+
+    GITHUB_ACTIONS("GitHub Actions") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("GITHUB_ACTIONS").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            Optional<String> gitHubRepository = environment.envVariable("GITHUB_REPOSITORY");
+            Optional<String> gitHubRunId = environment.envVariable("GITHUB_RUN_ID");
+            if (gitHubRepository.isPresent() && gitHubRunId.isPresent()) {
+                buildScan.link("GitHub Actions build", "https://github.com/" + gitHubRepository.get() + "/actions/runs/" + gitHubRunId.get());
+            }
+            environment.envVariable("GITHUB_WORKFLOW").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("GitHub workflow", value));
+        }
+    },
+
+    GITLAB("GitLab") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("GITLAB_CI").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.envVariable("CI_JOB_URL").ifPresent(url ->
+                buildScan.link("GitLab build", url));
+            environment.envVariable("CI_PIPELINE_URL").ifPresent(url ->
+                buildScan.link("GitLab pipeline", url));
+            environment.envVariable("CI_JOB_NAME").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI job", value));
+            environment.envVariable("CI_JOB_STAGE").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI stage", value));
+        }
+    },
+
+    TRAVIS("Travis") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("TRAVIS").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.envVariable("TRAVIS_BUILD_WEB_URL").ifPresent(url ->
+                buildScan.link("Travis build", url));
+            environment.envVariable("TRAVIS_BUILD_NUMBER").ifPresent(value ->
+                buildScan.value("CI build number", value));
+            environment.envVariable("TRAVIS_JOB_NAME").ifPresent(value ->
+                buildScan.addCustomValueAndSearchLink("CI job", value));
+            environment.envVariable("TRAVIS_EVENT_TYPE").ifPresent(buildScan::tag);
+        }
+    },
+
+    BITRISE("Bitrise") {
+        @Override
+        public boolean isDetected(CiEnvironment environment) {
+            return environment.envVariable("BITRISE_IO").isPresent();
+        }
+
+        @Override
+        public void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan) {
+            environment.envVariable("BITRISE_BUILD_URL").ifPresent(url ->
+                buildScan.link("Bitrise build", url));
+            environment.envVariable("BITRISE_BUILD_NUMBER").ifPresent(value ->
+                buildScan.value("CI build number", value));
+        }
+    };
+
+    private final String displayName;
+
+    BuiltInCiProvider(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String getName() {
+        return displayName;
+    }
+
+    private static void captureJenkinsMetadata(CiEnvironment environment, BuildScanAdapter buildScan, String buildLinkLabel) {
+        environment.envVariable("BUILD_URL").ifPresent(url ->
+            buildScan.link(buildLinkLabel, url));
+        environment.envVariable("BUILD_NUMBER").ifPresent(value ->
+            buildScan.value("CI build number", value));
+        environment.envVariable("NODE_NAME").ifPresent(value ->
+            buildScan.addCustomValueAndSearchLink("CI node", value));
+        environment.envVariable("JOB_NAME").ifPresent(value ->
+            buildScan.addCustomValueAndSearchLink("CI job", value));
+        environment.envVariable("STAGE_NAME").ifPresent(value ->
+            buildScan.addCustomValueAndSearchLink("CI stage", value));
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.gradle;
+
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Build-tool-agnostic view of the environment a build runs in, as seen by the {@link CiProvider} implementations.
+ * <p>
+ * Implementations memoize the values they look up, so each environment variable and system property is read at most
+ * once per build, no matter how many providers probe it.
+ */
+public interface CiEnvironment {
+
+    Optional<String> envVariable(String name);
+
+    Optional<String> sysProperty(String name);
+
+    /**
+     * Returns the given project property, which can only be queried from an action passed to {@link #withProjectProperties(Runnable)}.
+     */
+    Optional<String> projectProperty(String name);
+
+    Properties readPropertiesFile(String name);
+
+    /**
+     * Runs the given action as soon as project properties can be queried.
+     */
+    void withProjectProperties(Runnable action);
+
+}
@@ -0,0 +1,40 @@
+package com.gradle;
+
+import java.util.Optional;
+
+/**
+ * Detects a CI system and captures its metadata in the build scan.
+ * <p>
+ * Besides the CI systems supported out of the box, additional providers are discovered with the {@link java.util.ServiceLoader}
+ * mechanism, by listing their implementation classes in a {@code META-INF/services/com.gradle.CiProvider} file on the
+ * class path of the plugin or extension.
+ */
+public interface CiProvider {
+
+    String getName();
+
+    /**
+     * Returns whether the build runs on this CI system. Only variables whose values are the same for every build of the
+     * CI system should be read, since everything read here is a configuration cache input of the Gradle plugin.
+     */
+    boolean isDetected(CiEnvironment environment);
+
+    void captureMetadata(CiEnvironment environment, BuildScanAdapter buildScan);
+
+    /**
+     * Returns the name of the branch being built, for CI systems that check out a detached HEAD.
+     */
+    default Optional<String> getBranchName(CiEnvironment environment) {
+        return Optional.empty();
+    }
+
+    /**
+     * Returns whether the metadata can be captured once the build is executing, from an environment that only provides
+     * environment variables and system properties. Capturing metadata at that point keeps per-build values like build
+     * numbers from becoming configuration cache inputs.
+     */
+    default boolean supportsDeferredCapture() {
+        return true;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.gradle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Detects the CI systems a build runs on, in a single pass over the built-in providers and the providers registered
+ * through the {@link ServiceLoader} mechanism.
+ */
+final class CiProviderRegistry {
+
+    static List<CiProvider> detect(CiEnvironment environment) {
+        List<CiProvider> providers = new ArrayList<>(Arrays.asList(BuiltInCiProvider.values()));
+        ServiceLoader.load(CiProvider.class, CiProviderRegistry.class.getClassLoader()).forEach(providers::add);
+
+        List<CiProvider> detected = new ArrayList<>();
+        for (CiProvider provider : providers) {
+            if (provider.isDetected(environment)) {
+                detected.add(provider);
+            }
+        }
+        return Collections.unmodifiableList(detected);
+    }
+
+    private CiProviderRegistry() {
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.gradle;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatBytes;
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Monitors the garbage collection of the build JVM while the build runs, without polling: the pauses are received as
+ * garbage collection notifications, and the old generation exceeding most of its maximum size right after a collection
+ * is received as a collection usage threshold notification.
+ * <p>
+ * The heap is considered undersized if the old generation stayed nearly full after a collection, or if the JVM spent a
+ * significant share of the wall time of the build in garbage collection pauses.
+ */
+final class GarbageCollectionMonitor implements NotificationListener {
+
+    private static final double OCCUPANCY_THRESHOLD = 0.9;
+    private static final double GC_SHARE_THRESHOLD = 0.1;
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private MemoryPoolMXBean oldGeneration;
+    private long previousOccupancyThreshold;
+    private long startNanos;
+    private long stopNanos;
+    private long pauseMillis;
+    private long collections;
+    private long peakOldGenerationBytes;
+    private boolean occupancyThresholdExceeded;
+
+    synchronized void start() {
+        startNanos = System.nanoTime();
+        oldGeneration = findOldGeneration();
+        if (oldGeneration != null && oldGeneration.isCollectionUsageThresholdSupported() && oldGeneration.getUsage().getMax() > 0) {
+            previousOccupancyThreshold = oldGeneration.getCollectionUsageThreshold();
+            oldGeneration.setCollectionUsageThreshold((long) (oldGeneration.getUsage().getMax() * OCCUPANCY_THRESHOLD));
+            addListener(ManagementFactory.getMemoryMXBean());
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            addListener(collector);
+        }
+    }
+
+    synchronized void stop() {
+        if (emitters.isEmpty()) {
+            return;
+        }
+
+        stopNanos = System.nanoTime();
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException ignored) {
+                // the listener was not registered in the first place
+            }
+        }
+        emitters.clear();
+        if (oldGeneration != null && oldGeneration.isCollectionUsageThresholdSupported()) {
+            // the threshold is shared by the whole JVM, which outlives the build in case of the Gradle daemon
+            oldGeneration.setCollectionUsageThreshold(previousOccupancyThreshold);
+        }
+    }
+
+    @Override
+    public synchronized void handleNotification(Notification notification, Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            collections++;
+            if (!isConcurrent(info)) {
+                pauseMillis += info.getGcInfo().getDuration();
+            }
+            MemoryUsage oldGenerationAfterGc = oldGeneration != null ? info.getGcInfo().getMemoryUsageAfterGc().get(oldGeneration.getName()) : null;
+            if (oldGenerationAfterGc != null) {
+                peakOldGenerationBytes = Math.max(peakOldGenerationBytes, oldGenerationAfterGc.getUsed());
+            }
+        } else if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            occupancyThresholdExceeded = true;
+        }
+    }
+
+    /**
+     * Stops the monitoring and passes the garbage collection pause time, its share of the wall time, the peak occupancy
+     * of the old generation after a collection and whether the heap was undersized to the given consumer as custom
+     * values. If the heap was undersized, the given hint on how to configure the maximum heap size is passed as well.
+     */
+    synchronized void report(String maxHeapSizeHint, BiConsumer<String, String> customValues) {
+        stop();
+        long wallMillis = Math.max(1, (stopNanos - startNanos) / 1_000_000);
+        double gcShare = (double) pauseMillis / wallMillis;
+        boolean undersized = occupancyThresholdExceeded || gcShare > GC_SHARE_THRESHOLD;
+
+        customValues.accept("GC pause time", formatSeconds(pauseMillis) + " (" + collections + " collections)");
+        customValues.accept("GC share of wall time", Math.round(100 * gcShare) + "%");
+        if (oldGeneration != null) {
+            long max = oldGeneration.getUsage().getMax();
+            customValues.accept("Peak old gen occupancy", formatBytes(peakOldGenerationBytes)
+                + (max > 0 ? " of " + formatBytes(max) + " (" + Math.round(100.0 * peakOldGenerationBytes / max) + "%)" : ""));
+        }
+        customValues.accept("Heap undersized", String.valueOf(undersized));
+        if (undersized) {
+            customValues.accept("Heap recommendation", "Increase the maximum heap size of " + formatBytes(Runtime.getRuntime().maxMemory()) + " " + maxHeapSizeHint);
+        }
+    }
+
+    private void addListener(Object mxBean) {
+        if (mxBean instanceof NotificationEmitter) {
+            NotificationEmitter emitter = (NotificationEmitter) mxBean;
+            emitter.addNotificationListener(this, null, null);
+            emitters.add(emitter);
+        }
+    }
+
+    /**
+     * Whether the given collection belongs to a concurrent cycle, whose duration is not counted as a pause. Such
+     * collections are reported with a cycle action, like the ones of ZGC and Shenandoah, or by a collector whose name
+     * denotes concurrent cycles, like {@code ConcurrentMarkSweep} or {@code ZGC Major Cycles}. Before JDK 17, ZGC reports
+     * its cycles by a collector named {@code ZGC}. The short remark and cleanup pauses that {@code G1 Concurrent GC}
+     * reports since JDK 20 are not counted either, so that the pause time of G1 is comparable across JDK versions.
+     */
+    private static boolean isConcurrent(GarbageCollectionNotificationInfo info) {
+        String name = info.getGcName();
+        return info.getGcAction().contains("cycle") || name.contains("Cycles") || name.contains("Concurrent") || name.equals("ZGC");
+    }
+
+    private static MemoryPoolMXBean findOldGeneration() {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                if (pool.getName().contains("Old") || pool.getName().contains("Tenured")) {
+                    return pool;
+                }
+                heapPools.add(pool);
+            }
+        }
+        // collectors without generations, like ZGC, have a single heap pool
+        return heapPools.size() == 1 ? heapPools.get(0) : null;
+    }
+
+}
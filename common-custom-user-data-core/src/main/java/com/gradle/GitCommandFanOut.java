@@ -0,0 +1,65 @@
+package com.gradle;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs independent git commands concurrently.
+ * <p>
+ * All commands share a single deadline that starts when the fan-out is created. Waiting for the result of a command never
+ * extends beyond that deadline: a command that has not completed in time yields {@code null}, just like a failed command,
+ * while the results of all commands that did complete remain available. Commands still running at the deadline, or when
+ * the fan-out is closed, are destroyed.
+ */
+final class GitCommandFanOut implements AutoCloseable {
+
+    private final long deadlineNanos;
+    private final Set<CompletableFuture<?>> results = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    GitCommandFanOut(Duration timeout) {
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    <T> CompletableFuture<T> submit(ProcessRunner.OutputProcessor<? extends T> stdOutProcessor, String... args) {
+        return track(ProcessRunner.exec(remainingTime(), stdOutProcessor, args));
+    }
+
+    private <T> CompletableFuture<T> track(CompletableFuture<T> result) {
+        results.add(result);
+        if (closed) {
+            result.cancel(true);
+        }
+        return result;
+    }
+
+    <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.get(remainingTime().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the time left until the shared deadline, which is zero once the deadline has passed.
+     */
+    Duration remainingTime() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        results.forEach(result -> result.cancel(true));
+    }
+
+}
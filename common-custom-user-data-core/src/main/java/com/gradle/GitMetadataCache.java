@@ -0,0 +1,104 @@
+package com.gradle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Persists the Git repository URL, commit id, short commit id and branch name between builds.
+ * <p>
+ * The cached values are keyed on the content of HEAD and of the ref it points to, and on the modification time and size
+ * of the packed refs, the index and all configuration files of the repository. Committing, switching branches, pulling
+ * and changing the remote all touch at least one of these files, so a cache hit can safely skip reading the repository
+ * and invoking git.
+ */
+final class GitMetadataCache {
+
+    static final String REPOSITORY_URL = "repositoryUrl";
+    static final String COMMIT_ID = "commitId";
+    static final String COMMIT_SHORT_ID = "commitShortId";
+    static final String BRANCH_NAME = "branchName";
+
+    private static final String KEY = "key";
+    private static final String SYMBOLIC_REF_PREFIX = "ref: ";
+
+    private final Path cacheFile;
+
+    GitMetadataCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    static Optional<String> computeKey(GitMetadataReader gitReader) {
+        try {
+            Path gitDir = gitReader.getGitDir();
+            Path commonDir = gitReader.getCommonDir();
+
+            StringBuilder key = new StringBuilder();
+            String head = readContent(gitDir.resolve("HEAD"));
+            key.append(head);
+            if (gitReader.isReftable()) {
+                appendStamp(key, commonDir.resolve("reftable").resolve("tables.list"));
+            } else if (head.startsWith(SYMBOLIC_REF_PREFIX)) {
+                Path ref = commonDir.resolve(head.substring(SYMBOLIC_REF_PREFIX.length()));
+                String target = Files.isRegularFile(ref) ? readContent(ref) : "";
+                if (target.startsWith(SYMBOLIC_REF_PREFIX)) {
+                    // nested symbolic refs are too rare to be worth tracking
+                    return Optional.empty();
+                }
+                key.append('|').append(target);
+                appendStamp(key, commonDir.resolve("packed-refs"));
+            }
+            appendStamp(key, gitDir.resolve("index"));
+            for (Path configFile : gitReader.getConfigFiles()) {
+                appendStamp(key, configFile);
+            }
+            return Optional.of(key.toString());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    Optional<Properties> load(String key) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+
+        try (InputStream input = Files.newInputStream(cacheFile)) {
+            Properties values = new Properties();
+            values.load(input);
+            return key.equals(values.getProperty(KEY)) ? Optional.of(values) : Optional.empty();
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    void store(String key, Properties values) {
+        Properties entry = new Properties();
+        entry.putAll(values);
+        entry.setProperty(KEY, key);
+
+        try {
+            Utils.writeAtomically(cacheFile, output -> entry.store(output, null));
+        } catch (IOException ignored) {
+            // the cache is an optimization only, the values will be computed again by the next build
+        }
+    }
+
+    private static void appendStamp(StringBuilder key, Path file) throws IOException {
+        key.append('|');
+        if (Files.exists(file)) {
+            key.append(Files.getLastModifiedTime(file)).append(':').append(Files.size(file));
+        } else {
+            key.append('-');
+        }
+    }
+
+    private static String readContent(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.gradle;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.gradle.ProcessRunner.getOrNull;
+import static com.gradle.Utils.isNotEmpty;
+
+/**
+ * Captures the Git repository URL, commit id, branch name and status of the working directory as tags, links and
+ * custom values of the build scan.
+ */
+final class GitMetadataCapture implements Consumer<BuildScanAdapter> {
+
+    private final boolean parallel;
+    private final Duration timeout;
+    private final File cacheFile; // null to not cache the Git metadata
+    private final int statusMaxPaths; // negative to capture the full git status output
+    private final int maxOutputBytes; // zero or negative to capture the full output of git commands
+    private final String ciBranchName; // null to read the branch name from the repository
+    private Boolean gitInstalled;
+
+    GitMetadataCapture(boolean parallel, Duration timeout, File cacheFile, int statusMaxPaths, int maxOutputBytes, String ciBranchName) {
+        this.parallel = parallel;
+        this.timeout = timeout;
+        this.cacheFile = cacheFile;
+        this.statusMaxPaths = statusMaxPaths;
+        this.maxOutputBytes = maxOutputBytes;
+        this.ciBranchName = ciBranchName;
+    }
+
+    @Override
+    public void accept(BuildScanAdapter buildScan) {
+        // read as much as possible directly from the repository files and only fork git for the remaining values
+        Optional<GitMetadataReader> gitReader = GitMetadataReader.forWorkingDirectory();
+        Optional<String> ciBranchName = Optional.ofNullable(this.ciBranchName);
+
+        // unchanged repositories are served from the values cached by a previous build
+        GitMetadataCache cache = cacheFile != null ? new GitMetadataCache(cacheFile.toPath()) : null;
+        Optional<String> cacheKey = cache != null ? gitReader.flatMap(GitMetadataCache::computeKey) : Optional.empty();
+        Optional<Properties> cachedValues = cacheKey.flatMap(key -> cache.load(key));
+
+        String gitRepo;
+        String gitCommitId;
+        String gitCommitShortId;
+        String gitBranchName;
+        String gitStatus;
+        try (GitCommandFanOut fanOut = parallel ? new GitCommandFanOut(timeout) : null;
+             // in parallel mode, the revision lookups are bound by the same deadline as all other git commands
+             GitSession gitSession = parallel ? new GitSession(fanOut::remainingTime) : new GitSession(ProcessRunner.DEFAULT_TIMEOUT)) {
+            // in parallel mode, all git commands are started before waiting for the first result
+            Supplier<String> gitStatusQuery = statusMaxPaths >= 0 ? execGitStatusSummary(gitReader, fanOut) : execGit(fanOut, "status", "--porcelain");
+            if (cachedValues.isPresent()) {
+                gitRepo = cachedValues.get().getProperty(GitMetadataCache.REPOSITORY_URL);
+                gitCommitId = cachedValues.get().getProperty(GitMetadataCache.COMMIT_ID);
+                gitCommitShortId = cachedValues.get().getProperty(GitMetadataCache.COMMIT_SHORT_ID);
+                gitBranchName = ciBranchName.orElse(cachedValues.get().getProperty(GitMetadataCache.BRANCH_NAME));
+            } else {
+                Supplier<String> gitRepoQuery = readOrExecGit(gitReader, fanOut, GitMetadataReader::readRepositoryUrl, "config", "--get", "remote.origin.url");
+                Supplier<String> gitCommitIdQuery = readOrResolveHead(gitReader, gitSession, GitMetadataReader::readCommitId, Function.identity());
+                Supplier<String> gitCommitShortIdQuery = readOrResolveHead(gitReader, gitSession, GitMetadataReader::readCommitShortId, commitId -> commitId.substring(0, 8));
+                Supplier<String> gitBranchNameQuery = ciBranchName.isPresent() ? ciBranchName::get : readOrExecGit(gitReader, fanOut, GitMetadataReader::readBranchName, "rev-parse", "--abbrev-ref", "HEAD");
+
+                gitRepo = gitRepoQuery.get();
+                gitCommitId = gitCommitIdQuery.get();
+                gitCommitShortId = gitCommitShortIdQuery.get();
+                gitBranchName = gitBranchNameQuery.get();
+
+                // only cache complete results, and never the branch name provided by the CI server
+                if (cacheKey.isPresent() && !ciBranchName.isPresent() && gitRepo != null && gitCommitId != null && gitCommitShortId != null && gitBranchName != null) {
+                    Properties values = new Properties();
+                    values.setProperty(GitMetadataCache.REPOSITORY_URL, gitRepo);
+                    values.setProperty(GitMetadataCache.COMMIT_ID, gitCommitId);
+                    values.setProperty(GitMetadataCache.COMMIT_SHORT_ID, gitCommitShortId);
+                    values.setProperty(GitMetadataCache.BRANCH_NAME, gitBranchName);
+                    cache.store(cacheKey.get(), values);
+                }
+            }
+            gitStatus = gitStatusQuery.get();
+        }
+
+        if (isNotEmpty(gitRepo)) {
+            buildScan.value("Git repository", gitRepo);
+        }
+        if (isNotEmpty(gitCommitId)) {
+            buildScan.value("Git commit id", gitCommitId);
+        }
+        if (isNotEmpty(gitCommitShortId)) {
+            buildScan.addCustomValueAndSearchLink("Git commit id", "Git commit id short", gitCommitShortId);
+        }
+        if (isNotEmpty(gitBranchName)) {
+            buildScan.tag(gitBranchName);
+            buildScan.value("Git branch", gitBranchName);
+        }
+        if (isNotEmpty(gitStatus)) {
+            buildScan.tag("Dirty");
+            buildScan.value("Git status", gitStatus);
+        }
+
+        if (isNotEmpty(gitRepo) && isNotEmpty(gitCommitId)) {
+            if (gitRepo.contains("github.com/") || gitRepo.contains("github.com:")) {
+                Matcher matcher = Pattern.compile("(.*)github\\.com[/|:](.*)").matcher(gitRepo);
+                if (matcher.matches()) {
+                    String rawRepoPath = matcher.group(2);
+                    String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
+                    buildScan.link("Github source", "https://github.com/" + repoPath + "/tree/" + gitCommitId);
+                }
+            } else if (gitRepo.contains("gitlab.com/") || gitRepo.contains("gitlab.com:")) {
+                Matcher matcher = Pattern.compile("(.*)gitlab\\.com[/|:](.*)").matcher(gitRepo);
+                if (matcher.matches()) {
+                    String rawRepoPath = matcher.group(2);
+                    String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
+                    buildScan.link("GitLab Source", "https://gitlab.com/" + repoPath + "/-/commit/" + gitCommitId);
+                }
+            }
+        }
+    }
+
+    private Supplier<String> readOrExecGit(Optional<GitMetadataReader> gitReader, GitCommandFanOut fanOut, Function<GitMetadataReader, Optional<String>> read, String... gitArgs) {
+        Optional<String> value = gitReader.flatMap(read);
+        return value.isPresent() ? value::get : execGit(fanOut, gitArgs);
+    }
+
+    private Supplier<String> readOrResolveHead(Optional<GitMetadataReader> gitReader, GitSession gitSession, Function<GitMetadataReader, Optional<String>> read, Function<String, String> format) {
+        // all lookups of HEAD are answered by the same git process
+        Optional<String> value = gitReader.flatMap(read);
+        return value.isPresent() ? value::get : () -> parallel || isGitInstalled() ? gitSession.resolve("HEAD").map(format).orElse(null) : null;
+    }
+
+    private Supplier<String> execGit(GitCommandFanOut fanOut, String... gitArgs) {
+        String[] args = new String[gitArgs.length + 1];
+        args[0] = "git";
+        System.arraycopy(gitArgs, 0, args, 1, gitArgs.length);
+        return execGit(fanOut, maxOutputBytes > 0 ? BoundedOutputCapture.processor(maxOutputBytes) : ProcessRunner::readText, args);
+    }
+
+    private Supplier<String> execGitStatusSummary(Optional<GitMetadataReader> gitReader, GitCommandFanOut fanOut) {
+        return execGit(fanOut, output -> {
+            GitStatusSummary summary = new GitStatusSummary(statusMaxPaths);
+            ProcessRunner.readLines(output, summary);
+            return summary.format();
+        }, GitStatusSummary.command(gitReader));
+    }
+
+    private Supplier<String> execGit(GitCommandFanOut fanOut, ProcessRunner.OutputProcessor<String> stdOutProcessor, String... args) {
+        if (fanOut != null) {
+            // a missing git executable makes the command fail, no need to check for it upfront
+            CompletableFuture<String> result = fanOut.submit(stdOutProcessor, args);
+            return () -> fanOut.await(result);
+        }
+        return () -> isGitInstalled() ? getOrNull(ProcessRunner.exec(ProcessRunner.DEFAULT_TIMEOUT, stdOutProcessor, args)) : null;
+    }
+
+    private boolean isGitInstalled() {
+        if (gitInstalled == null) {
+            gitInstalled = Boolean.TRUE.equals(getOrNull(ProcessRunner.execAndCheckSuccess(ProcessRunner.DEFAULT_TIMEOUT, "git", "--version")));
+        }
+        return gitInstalled;
+    }
+
+}
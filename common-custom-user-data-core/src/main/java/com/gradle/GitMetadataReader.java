@@ -0,0 +1,390 @@
+package com.gradle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Reads Git metadata directly from the files of a Git repository, without forking any git process.
+ * <p>
+ * Supports regular checkouts, linked worktrees and submodules whose {@code .git} file points to the actual Git directory.
+ * Every read method returns an empty {@code Optional} if the value cannot be determined reliably from the repository files,
+ * in which case the caller is expected to fall back to invoking the git executable. A present but empty value means that
+ * the repository does not define the requested value.
+ * <p>
+ * HEAD is resolved only once, so a reader reflects the state of the repository at the time of a single capture.
+ */
+final class GitMetadataReader {
+
+    private static final String SYMBOLIC_REF_PREFIX = "ref: ";
+    private static final String GITDIR_PREFIX = "gitdir: ";
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+    private static final int MAX_SYMBOLIC_REF_DEPTH = 5;
+    private static final int SHORT_COMMIT_ID_LENGTH = 8;
+
+    private static final int MAX_CONFIG_INCLUDE_DEPTH = 10;
+
+    private final Path gitDir;
+    private final Path commonDir;
+    private final boolean reftable;
+    private Optional<String> commitId; // HEAD is resolved at most once per reader
+    private String headRef; // the ref HEAD points to, null if HEAD is detached or not resolved yet
+    private Optional<Boolean> worktreeConfig; // extensions.worktreeConfig is read at most once per reader
+
+    private GitMetadataReader(Path gitDir, Path commonDir, boolean reftable) {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.reftable = reftable;
+    }
+
+    static Optional<GitMetadataReader> forWorkingDirectory() {
+        return forDirectory(Paths.get("").toAbsolutePath());
+    }
+
+    static Optional<GitMetadataReader> forDirectory(Path dir) {
+        // these environment variables change how git locates the repository, leave such setups to the git executable
+        if (System.getenv("GIT_DIR") != null || System.getenv("GIT_COMMON_DIR") != null) {
+            return Optional.empty();
+        }
+
+        try {
+            for (Path current = dir; current != null; current = current.getParent()) {
+                Path dotGit = current.resolve(".git");
+                if (Files.isDirectory(dotGit)) {
+                    return forGitDir(dotGit);
+                } else if (Files.isRegularFile(dotGit)) {
+                    // linked worktrees and submodules use a .git file that points to the actual Git directory
+                    String content = readFirstLine(dotGit);
+                    return content.startsWith(GITDIR_PREFIX)
+                        ? forGitDir(current.resolve(content.substring(GITDIR_PREFIX.length())).normalize())
+                        : Optional.empty();
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<GitMetadataReader> forGitDir(Path gitDir) throws IOException {
+        if (!Files.isRegularFile(gitDir.resolve("HEAD"))) {
+            return Optional.empty();
+        }
+
+        // linked worktrees share refs and configuration with the main repository
+        Path commonDirFile = gitDir.resolve("commondir");
+        Path commonDir = Files.isRegularFile(commonDirFile) ? gitDir.resolve(readFirstLine(commonDirFile)).normalize() : gitDir;
+
+        boolean reftable = Files.isDirectory(commonDir.resolve("reftable"));
+        return Optional.of(new GitMetadataReader(gitDir, commonDir, reftable));
+    }
+
+    Path getGitDir() {
+        return gitDir;
+    }
+
+    Path getCommonDir() {
+        return commonDir;
+    }
+
+    /**
+     * Whether the refs are stored in the reftable format, which cannot be read by this reader.
+     */
+    boolean isReftable() {
+        return reftable;
+    }
+
+    /**
+     * Returns the repository configuration files, including all files they include.
+     */
+    List<Path> getConfigFiles() {
+        List<Path> configFiles = new ArrayList<>();
+        collectConfigFiles(commonDir.resolve("config"), configFiles, 0);
+        // when the setting cannot be read, the file is listed in case it is used
+        if (readWorktreeConfig().orElse(true)) {
+            collectConfigFiles(gitDir.resolve("config.worktree"), configFiles, 0);
+        }
+        return configFiles;
+    }
+
+    private static void collectConfigFiles(Path configFile, List<Path> configFiles, int depth) {
+        configFiles.add(configFile);
+        if (depth >= MAX_CONFIG_INCLUDE_DEPTH || !Files.isRegularFile(configFile)) {
+            return;
+        }
+
+        try {
+            boolean inIncludeSection = false;
+            for (String rawLine : Files.readAllLines(configFile, StandardCharsets.UTF_8)) {
+                String line = rawLine.trim();
+                if (line.startsWith("[")) {
+                    String headerSection = line.substring(1).split("[\\s.\\]\"]", 2)[0].toLowerCase();
+                    inIncludeSection = headerSection.equals("include") || headerSection.equals("includeif");
+                } else if (inIncludeSection && line.indexOf('=') > 0 && line.substring(0, line.indexOf('=')).trim().equalsIgnoreCase("path")) {
+                    Optional<String> includePath = parseConfigValue(line.substring(line.indexOf('=') + 1));
+                    if (includePath.isPresent() && !includePath.get().isEmpty()) {
+                        collectConfigFiles(resolveIncludePath(configFile, includePath.get()), configFiles, depth + 1);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // the file is still part of the returned list, so changes to it are noticed by the callers
+        }
+    }
+
+    private static Path resolveIncludePath(Path configFile, String includePath) {
+        if (includePath.startsWith("~/")) {
+            return Paths.get(System.getProperty("user.home")).resolve(includePath.substring(2));
+        }
+        return configFile.getParent().resolve(includePath).normalize();
+    }
+
+    /**
+     * Equivalent of {@code git config --get remote.origin.url}.
+     */
+    Optional<String> readRepositoryUrl() {
+        return readConfigValue("remote", "origin", "url");
+    }
+
+    /**
+     * Equivalent of {@code git rev-parse --verify HEAD}.
+     */
+    Optional<String> readCommitId() {
+        if (commitId == null) {
+            commitId = resolveHead();
+        }
+        return commitId;
+    }
+
+    /**
+     * Equivalent of {@code git rev-parse --short=8 --verify HEAD}, except that the id is not extended
+     * beyond 8 characters in the rare case where the abbreviation is ambiguous within the repository.
+     */
+    Optional<String> readCommitShortId() {
+        return readCommitId().map(id -> id.length() > SHORT_COMMIT_ID_LENGTH ? id.substring(0, SHORT_COMMIT_ID_LENGTH) : id);
+    }
+
+    /**
+     * Equivalent of {@code git rev-parse --abbrev-ref HEAD}.
+     */
+    Optional<String> readBranchName() {
+        Optional<String> commitId = readCommitId();
+        if (!commitId.isPresent() || commitId.get().isEmpty()) {
+            // git fails to abbreviate HEAD on an unborn branch
+            return commitId;
+        }
+
+        if (headRef == null) {
+            return Optional.of("HEAD");
+        }
+        return Optional.of(headRef.startsWith(BRANCH_REF_PREFIX) ? headRef.substring(BRANCH_REF_PREFIX.length()) : headRef);
+    }
+
+    /**
+     * Reads the last value of the given key from the repository configuration, the same way {@code git config --get} does.
+     * Configuration files that include other files are not supported.
+     */
+    Optional<String> readConfigValue(String section, String subsection, String key) {
+        Optional<String> value = readConfigValue(commonDir.resolve("config"), section, subsection, key);
+        if (!value.isPresent()) {
+            return value;
+        }
+
+        Optional<Boolean> worktreeConfig = readWorktreeConfig();
+        if (!worktreeConfig.isPresent() || !worktreeConfig.get()) {
+            return worktreeConfig.map(enabled -> value.get());
+        }
+        return readConfigValue(gitDir.resolve("config.worktree"), section, subsection, key)
+            .map(worktreeValue -> worktreeValue.isEmpty() ? value.get() : worktreeValue);
+    }
+
+    /**
+     * Whether the {@code config.worktree} file is part of the configuration, which git only honours if
+     * {@code extensions.worktreeConfig} is enabled in the configuration of the repository.
+     */
+    private Optional<Boolean> readWorktreeConfig() {
+        if (worktreeConfig == null) {
+            worktreeConfig = readConfigValue(commonDir.resolve("config"), "extensions", null, "worktreeConfig").map(GitMetadataReader::isTrue);
+        }
+        return worktreeConfig;
+    }
+
+    private static boolean isTrue(String value) {
+        // an unset key reads as an empty value, which is false like for git
+        switch (value.toLowerCase()) {
+            case "true":
+            case "yes":
+            case "on":
+                return true;
+            default:
+                try {
+                    return Integer.parseInt(value) != 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+        }
+    }
+
+    private static Optional<String> readConfigValue(Path configFile, String section, String subsection, String key) {
+        if (!Files.isRegularFile(configFile)) {
+            return Optional.of("");
+        }
+
+        try {
+            return lastConfigValue(Files.readAllLines(configFile, StandardCharsets.UTF_8), section, subsection, key);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<String> lastConfigValue(List<String> lines, String section, String subsection, String key) {
+        String value = "";
+        boolean inSection = false;
+        for (String rawLine : lines) {
+            String line = rawLine.trim();
+            if (line.startsWith("[")) {
+                int end = line.indexOf(']');
+                if (end < 0) {
+                    return Optional.empty();
+                }
+                String header = line.substring(1, end).trim();
+                String headerSection = header.split("[\\s.]", 2)[0].toLowerCase();
+                if (headerSection.equals("include") || headerSection.equals("includeif")) {
+                    return Optional.empty();
+                }
+                inSection = headerSection.equals(section) && Objects.equals(subsection, parseSubsection(header));
+                line = line.substring(end + 1).trim();
+            }
+            if (!inSection || line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                continue;
+            }
+
+            int separator = line.indexOf('=');
+            String name = (separator < 0 ? line : line.substring(0, separator)).trim();
+            if (name.equalsIgnoreCase(key)) {
+                Optional<String> parsed = separator < 0 ? Optional.of("true") : parseConfigValue(line.substring(separator + 1));
+                if (!parsed.isPresent()) {
+                    return Optional.empty();
+                }
+                value = parsed.get();
+            }
+        }
+        return Optional.of(value);
+    }
+
+    private static String parseSubsection(String header) {
+        int quote = header.indexOf('"');
+        if (quote >= 0) {
+            return header.substring(quote + 1, header.lastIndexOf('"')).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        // deprecated [section.subsection] syntax, subsection names are case-insensitive
+        int dot = header.indexOf('.');
+        return dot >= 0 ? header.substring(dot + 1).toLowerCase() : null;
+    }
+
+    private static Optional<String> parseConfigValue(String rawValue) {
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int significantLength = 0;
+        for (int i = 0; i < rawValue.length(); i++) {
+            char c = rawValue.charAt(i);
+            if (c == '\\') {
+                if (++i == rawValue.length()) {
+                    // line continuations are not supported
+                    return Optional.empty();
+                }
+                char escaped = rawValue.charAt(i);
+                value.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped == 'b' ? '\b' : escaped);
+                significantLength = value.length();
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '#' || c == ';')) {
+                break;
+            } else if (quoted || !Character.isWhitespace(c) || value.length() > 0) {
+                value.append(c);
+                if (quoted || !Character.isWhitespace(c)) {
+                    significantLength = value.length();
+                }
+            }
+        }
+        return Optional.of(value.substring(0, significantLength));
+    }
+
+    private Optional<String> resolveHead() {
+        if (reftable) {
+            return Optional.empty();
+        }
+
+        try {
+            return resolveRef("HEAD", 0);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<String> resolveRef(String ref, int depth) throws IOException {
+        if (depth > MAX_SYMBOLIC_REF_DEPTH) {
+            return Optional.empty();
+        }
+
+        Path looseRef = (isPerWorktreeRef(ref) ? gitDir : commonDir).resolve(ref);
+        if (Files.isRegularFile(looseRef)) {
+            String content = readFirstLine(looseRef);
+            if (content.startsWith(SYMBOLIC_REF_PREFIX)) {
+                String target = content.substring(SYMBOLIC_REF_PREFIX.length()).trim();
+                if (depth == 0) {
+                    // kept for the branch name, so HEAD is read only once
+                    headRef = target;
+                }
+                return resolveRef(target, depth + 1);
+            }
+            return isObjectId(content) ? Optional.of(content) : Optional.empty();
+        }
+
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (Files.isRegularFile(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs, StandardCharsets.UTF_8)) {
+                if (line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int separator = line.indexOf(' ');
+                if (separator > 0 && line.substring(separator + 1).trim().equals(ref)) {
+                    String objectId = line.substring(0, separator);
+                    return isObjectId(objectId) ? Optional.of(objectId) : Optional.empty();
+                }
+            }
+        }
+
+        // unborn branch
+        return Optional.of("");
+    }
+
+    private static boolean isPerWorktreeRef(String ref) {
+        return !ref.startsWith("refs/") || ref.startsWith("refs/bisect/") || ref.startsWith("refs/worktree/") || ref.startsWith("refs/rewritten/");
+    }
+
+    private static boolean isObjectId(String value) {
+        // SHA-1 or SHA-256 object ids
+        if (value.length() != 40 && value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readFirstLine(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        return lines.isEmpty() ? "" : lines.get(0).trim();
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.gradle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Resolves revisions through a single {@code git cat-file --batch-check} process that stays open for the duration of the
+ * capture, instead of starting a new git process per lookup.
+ * <p>
+ * The process is only started by the first lookup, and it is destroyed when the session is closed or when the timeout
+ * that remains at that time expires, whichever comes first. Once the process has failed, all further lookups yield an
+ * empty result.
+ * <p>
+ * Only revisions can be resolved this way. Configuration values and the name of the checked out branch are not available
+ * through {@code git cat-file}, so they still need a git process of their own when they cannot be read from the
+ * repository files.
+ */
+final class GitSession implements AutoCloseable {
+
+    private final Supplier<Duration> remainingTime;
+    private Process process;
+    private Writer input;
+    private BufferedReader output;
+    private boolean failed;
+
+    GitSession(Duration timeout) {
+        this(() -> timeout);
+    }
+
+    /**
+     * Creates a session whose process lives at most for the time the given supplier returns when the process is started,
+     * for example the time remaining until a deadline shared with other git commands.
+     */
+    GitSession(Supplier<Duration> remainingTime) {
+        this.remainingTime = remainingTime;
+    }
+
+    /**
+     * Returns the object id the given revision resolves to, or an empty result if the revision cannot be resolved.
+     */
+    synchronized Optional<String> resolve(String revision) {
+        if (failed || revision.indexOf('\n') >= 0) {
+            return Optional.empty();
+        }
+
+        try {
+            if (process == null) {
+                Duration timeout = remainingTime.get();
+                if (timeout.isZero() || timeout.isNegative()) {
+                    failed = true;
+                    return Optional.empty();
+                }
+                process = ProcessRunner.start(timeout, "git", "cat-file", "--batch-check=%(objectname) %(objecttype)");
+                input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+                output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            }
+
+            input.write(revision);
+            input.write('\n');
+            input.flush();
+            String response = output.readLine();
+            if (response == null) {
+                failed = true;
+                return Optional.empty();
+            }
+
+            // unknown revisions are reported as '<revision> missing' or '<revision> ambiguous'
+            if (response.equals(revision + " missing") || response.equals(revision + " ambiguous")) {
+                return Optional.empty();
+            }
+            int separator = response.indexOf(' ');
+            return Optional.of(separator >= 0 ? response.substring(0, separator) : response);
+        } catch (IOException e) {
+            failed = true;
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process != null) {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+                // the process is destroyed below in any case
+            }
+            process.destroyForcibly();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.gradle;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Summarizes the output of {@code git status --porcelain} line by line, keeping a count per kind of change and at most
+ * a given number of changed paths, instead of retaining the full output.
+ */
+final class GitStatusSummary implements Consumer<String> {
+
+    private final int maxPaths;
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private int total;
+
+    GitStatusSummary(int maxPaths) {
+        this.maxPaths = maxPaths;
+        for (String kind : new String[]{"modified", "added", "deleted", "renamed", "copied", "conflicted", "untracked"}) {
+            counts.put(kind, 0);
+        }
+    }
+
+    /**
+     * Returns the cheapest {@code git status} invocation that still detects a dirty checkout reliably.
+     * <p>
+     * Untracked files are only reported if the repository enables the untracked cache or a file system monitor, because
+     * finding them otherwise requires walking the entire working tree. Without them, git only compares the stat data of
+     * the tracked files with the index, and the index with HEAD. A checkout whose only changes are untracked files is then
+     * not considered dirty. Listing the untracked files separately, e.g. with {@code git ls-files --others}, would walk
+     * the same working tree, since git collects all untracked files before printing the first one.
+     */
+    static String[] command(Optional<GitMetadataReader> gitReader) {
+        boolean cheapUntrackedFiles = gitReader.map(reader ->
+            isEnabled(reader.readConfigValue("core", null, "fsmonitor")) || isEnabled(reader.readConfigValue("core", null, "untrackedCache"))
+        ).orElse(false);
+        return cheapUntrackedFiles
+            ? new String[]{"git", "status", "--porcelain"}
+            : new String[]{"git", "status", "--porcelain", "--untracked-files=no"};
+    }
+
+    private static boolean isEnabled(Optional<String> configValue) {
+        return configValue.isPresent() && !configValue.get().isEmpty() && !configValue.get().equalsIgnoreCase("false");
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line.length() < 4) {
+            return;
+        }
+
+        String kind = kindOf(line.charAt(0), line.charAt(1));
+        counts.merge(kind, 1, Integer::sum);
+        total++;
+        if (paths.size() < maxPaths) {
+            paths.add(line);
+        }
+    }
+
+    private static String kindOf(char index, char workTree) {
+        if (index == '?' && workTree == '?') {
+            return "untracked";
+        } else if (index == 'U' || workTree == 'U' || (index == 'A' && workTree == 'A') || (index == 'D' && workTree == 'D')) {
+            return "conflicted";
+        } else if (index == 'R' || workTree == 'R') {
+            return "renamed";
+        } else if (index == 'C' || workTree == 'C') {
+            return "copied";
+        } else if (index == 'A' || workTree == 'A') {
+            return "added";
+        } else if (index == 'D' || workTree == 'D') {
+            return "deleted";
+        }
+        return "modified";
+    }
+
+    boolean isDirty() {
+        return total > 0;
+    }
+
+    /**
+     * Returns the counts per kind of change followed by the captured paths, or an empty string if the checkout is clean.
+     */
+    String format() {
+        if (!isDirty()) {
+            return "";
+        }
+
+        StringBuilder summary = new StringBuilder();
+        counts.forEach((kind, count) -> {
+            if (count > 0) {
+                summary.append(summary.length() > 0 ? ", " : "").append(count).append(' ').append(kind);
+            }
+        });
+        paths.forEach(path -> summary.append('\n').append(path));
+        if (total > paths.size() && !paths.isEmpty()) {
+            summary.append("\n... and ").append(total - paths.size()).append(" more");
+        }
+        return summary.toString();
+    }
+
+}
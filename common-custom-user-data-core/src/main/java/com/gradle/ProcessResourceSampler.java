@@ -0,0 +1,374 @@
+package com.gradle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatBytes;
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Samples the resource usage of the build process and all of its descendant processes from the {@code /proc} file system
+ * of Linux, at a fixed interval.
+ * <p>
+ * Each sample reads {@code /proc/<pid>/stat} of all processes to find the process tree of the build, and
+ * {@code /proc/<pid>/status} and {@code /proc/<pid>/io} of the processes in the tree. The files are parsed directly from
+ * a buffer that is allocated once, the pids of all processes are looked up in primitive arrays, and the path of each
+ * file is built in a reused builder. Per process, a sample thus only allocates the entry listed in {@code /proc} and the
+ * path handed to the file system. The command line of a process is only read to classify it when it is first seen. All
+ * sampling state is only accessed by the sampling thread, and is only read once the sampling thread has terminated.
+ * <p>
+ * The usage of a process is the one of its last sample, so the usage between the last sample and the exit of a process
+ * is not accounted for.
+ * <p>
+ * The CPU time and the bytes read and written are counted over the lifetime of a process. For the processes that already
+ * exist at the first sample, e.g. a reused daemon, the values of the first sample are the baseline that is subtracted, so
+ * that the usage of earlier builds is not reported. The peak resident set size of such processes is the highest one of
+ * the samples, since their lifetime peak may stem from an earlier build, whereas the lifetime peak of the processes
+ * started during the build is exact.
+ */
+final class ProcessResourceSampler {
+
+    private static final File PROC = new File("/proc");
+    private static final String PROC_PREFIX = "/proc/";
+    private static final long CLOCK_TICKS_PER_SECOND = 100; // USER_HZ, which is 100 on all common architectures
+
+    private static final byte[] VM_HWM = "VmHWM:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VM_RSS = "VmRSS:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] READ_BYTES = "read_bytes:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_BYTES = "write_bytes:".getBytes(StandardCharsets.US_ASCII);
+
+    private final Duration interval;
+    private final byte[] buffer = new byte[8192];
+    private final Map<Integer, ProcessUsage> processes = new HashMap<>();
+    private final StringBuilder path = new StringBuilder(PROC_PREFIX);
+    // open addressing hash table from pid to the index in the arrays below, where a pid of 0 denotes a free slot
+    private int[] indexTablePids = new int[2048];
+    private int[] indexTableIndices = new int[2048];
+    private int[] pids = new int[1024];
+    private int[] parentPids = new int[1024];
+    private long[] cpuTicks = new long[1024];
+    private boolean[] inTree = new boolean[1024];
+    private int selfPid;
+    private boolean firstSample = true;
+    private boolean samplingTerminated = true;
+    private ScheduledExecutorService sampler;
+
+    ProcessResourceSampler(Duration interval) {
+        this.interval = interval;
+    }
+
+    static boolean isSupported() {
+        return new File(PROC, "self/stat").isFile();
+    }
+
+    synchronized void start() {
+        try {
+            selfPid = Integer.parseInt(new File(PROC, "self").getCanonicalFile().getName());
+        } catch (IOException | NumberFormatException e) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("common-custom-user-data-process-sampler-"));
+        samplingTerminated = false;
+        sampler.scheduleAtFixedRate(this::sample, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdown();
+            try {
+                // waiting for the sampling thread makes its state visible to the reporting thread
+                samplingTerminated = sampler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sampler = null;
+        }
+    }
+
+    /**
+     * Stops the sampling and passes the number of processes, the highest peak resident set size of a single process, the
+     * CPU time and the bytes read from and written to storage per kind of process to the given consumer as custom values.
+     * Nothing is passed if a sample is still running, since its state cannot be read safely.
+     */
+    synchronized void report(BiConsumer<String, String> customValues) {
+        stop();
+        if (!samplingTerminated) {
+            return;
+        }
+        Map<String, ProcessUsage> usageByType = new TreeMap<>();
+        processes.values().forEach(process -> usageByType.computeIfAbsent(process.type, t -> new ProcessUsage(t)).add(process));
+        usageByType.forEach((type, usage) -> customValues.accept("Process resources " + type, "processes=" + usage.count
+            + ", peakRss=" + formatBytes(usage.peakRssKilobytes * 1024)
+            + ", cpu=" + formatSeconds(usage.cpuTicks * 1000 / CLOCK_TICKS_PER_SECOND)
+            + ", read=" + formatBytes(usage.readBytes)
+            + ", written=" + formatBytes(usage.writeBytes)));
+    }
+
+    private void sample() {
+        String[] entries = PROC.list();
+        if (entries == null) {
+            return;
+        }
+
+        int count = 0;
+        clearIndexTable(entries.length);
+        for (String entry : entries) {
+            int pid = parsePid(entry);
+            if (pid <= 0) {
+                continue;
+            }
+            int length = read(pid, "stat");
+            int fieldsStart = lastIndexOf(')', length) + 2; // skip the command name, which may contain spaces
+            if (fieldsStart < 2) {
+                continue;
+            }
+            if (count == pids.length) {
+                grow();
+            }
+            pids[count] = pid;
+            // the fields following the command name start with the 3rd field
+            parentPids[count] = (int) parseLong(skipFields(fieldsStart, length, 1), length);
+            int utime = skipFields(fieldsStart, length, 11);
+            cpuTicks[count] = parseLong(utime, length) + parseLong(skipFields(utime, length, 1), length);
+            inTree[count] = pid == selfPid;
+            putIndex(pid, count);
+            count++;
+        }
+
+        // the process tree is shallow, so marking the children of marked processes converges after a few passes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < count; i++) {
+                if (!inTree[i] && isMarked(parentPids[i])) {
+                    inTree[i] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (inTree[i]) {
+                sampleProcess(pids[i], cpuTicks[i]);
+            }
+        }
+        firstSample = false;
+    }
+
+    private void sampleProcess(int pid, long cpuTicks) {
+        ProcessUsage process = processes.get(pid);
+        boolean firstSampleOfProcess = process == null;
+        if (firstSampleOfProcess) {
+            process = new ProcessUsage(pid == selfPid ? "build" : classify(pid), firstSample);
+            processes.put(pid, process);
+        }
+        process.count = 1;
+        if (firstSampleOfProcess && process.preExisting) {
+            process.baselineCpuTicks = cpuTicks;
+        }
+        process.cpuTicks = cpuTicks - process.baselineCpuTicks;
+
+        int length = read(pid, "status");
+        byte[] rssKey = process.preExisting ? VM_RSS : VM_HWM;
+        int rss = indexOf(rssKey, length);
+        if (rss >= 0) {
+            process.peakRssKilobytes = Math.max(process.peakRssKilobytes, parseLong(rss + rssKey.length, length));
+        }
+
+        length = read(pid, "io");
+        int readBytes = indexOf(READ_BYTES, length);
+        int writeBytes = indexOf(WRITE_BYTES, length);
+        if (readBytes >= 0 && writeBytes >= 0) {
+            long totalReadBytes = parseLong(readBytes + READ_BYTES.length, length);
+            long totalWriteBytes = parseLong(writeBytes + WRITE_BYTES.length, length);
+            if (firstSampleOfProcess && process.preExisting) {
+                process.baselineReadBytes = totalReadBytes;
+                process.baselineWriteBytes = totalWriteBytes;
+            }
+            process.readBytes = totalReadBytes - process.baselineReadBytes;
+            process.writeBytes = totalWriteBytes - process.baselineWriteBytes;
+        }
+    }
+
+    private String classify(int pid) {
+        int length = read(pid, "cmdline");
+        String commandLine = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        if (commandLine.contains("Gradle Test Executor") || commandLine.contains("surefirebooter") || commandLine.contains("failsafe")) {
+            return "test fork";
+        } else if (commandLine.contains("KotlinCompileDaemon") || commandLine.contains("org.codehaus.plexus.compiler") || commandLine.contains("javac")) {
+            return "compiler daemon";
+        } else if (commandLine.contains("GradleWorkerMain")) {
+            return "worker";
+        } else {
+            return "other";
+        }
+    }
+
+    private boolean isMarked(int pid) {
+        int index = getIndex(pid);
+        return index >= 0 && inTree[index];
+    }
+
+    private static int parsePid(String entry) {
+        int pid = 0;
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c < '0' || c > '9' || pid > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            pid = pid * 10 + (c - '0');
+        }
+        return pid;
+    }
+
+    private void clearIndexTable(int maxEntries) {
+        // keep the table at most half full, so that probing ends quickly
+        int capacity = indexTablePids.length;
+        while (capacity < maxEntries * 2) {
+            capacity *= 2;
+        }
+        if (capacity != indexTablePids.length) {
+            indexTablePids = new int[capacity];
+            indexTableIndices = new int[capacity];
+        } else {
+            Arrays.fill(indexTablePids, 0);
+        }
+    }
+
+    private void putIndex(int pid, int index) {
+        int mask = indexTablePids.length - 1;
+        int slot = (pid * 0x9E3779B9) & mask;
+        while (indexTablePids[slot] != 0 && indexTablePids[slot] != pid) {
+            slot = (slot + 1) & mask;
+        }
+        indexTablePids[slot] = pid;
+        indexTableIndices[slot] = index;
+    }
+
+    private int getIndex(int pid) {
+        int mask = indexTablePids.length - 1;
+        int slot = (pid * 0x9E3779B9) & mask;
+        while (indexTablePids[slot] != 0) {
+            if (indexTablePids[slot] == pid) {
+                return indexTableIndices[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int capacity = pids.length * 2;
+        pids = Arrays.copyOf(pids, capacity);
+        parentPids = Arrays.copyOf(parentPids, capacity);
+        cpuTicks = Arrays.copyOf(cpuTicks, capacity);
+        inTree = Arrays.copyOf(inTree, capacity);
+    }
+
+    /**
+     * Reads the given file of the given process into the buffer and returns the number of bytes read, or 0 if the file
+     * cannot be read, e.g. because the process has exited.
+     */
+    private int read(int pid, String file) {
+        path.setLength(PROC_PREFIX.length());
+        path.append(pid).append('/').append(file);
+        try (InputStream input = new FileInputStream(path.toString())) {
+            int length = 0;
+            int nRead;
+            while (length < buffer.length && (nRead = input.read(buffer, length, buffer.length - length)) != -1) {
+                length += nRead;
+            }
+            return length;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private int skipFields(int position, int length, int fields) {
+        for (int i = position; i < length; i++) {
+            if (buffer[i] == ' ' && --fields == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    private int lastIndexOf(char c, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte[] key, int length) {
+        outer:
+        for (int i = 0; i <= length - key.length; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (buffer[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private long parseLong(int position, int length) {
+        int i = position;
+        while (i < length && (buffer[i] == ' ' || buffer[i] == '\t')) {
+            i++;
+        }
+        long value = 0;
+        while (i < length && buffer[i] >= '0' && buffer[i] <= '9') {
+            value = value * 10 + (buffer[i++] - '0');
+        }
+        return value;
+    }
+
+    private static final class ProcessUsage {
+
+        private final String type;
+        private final boolean preExisting;
+        private int count;
+        private long cpuTicks;
+        private long peakRssKilobytes;
+        private long readBytes;
+        private long writeBytes;
+        private long baselineCpuTicks;
+        private long baselineReadBytes;
+        private long baselineWriteBytes;
+
+        private ProcessUsage(String type) {
+            this(type, false);
+        }
+
+        private ProcessUsage(String type, boolean preExisting) {
+            this.type = type;
+            this.preExisting = preExisting;
+        }
+
+        void add(ProcessUsage process) {
+            count += process.count;
+            cpuTicks += process.cpuTicks;
+            peakRssKilobytes = Math.max(peakRssKilobytes, process.peakRssKilobytes);
+            readBytes += process.readBytes;
+            writeBytes += process.writeBytes;
+        }
+
+    }
+
+}
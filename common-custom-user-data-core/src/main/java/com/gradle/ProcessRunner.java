@@ -0,0 +1,196 @@
+package com.gradle;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Runs external processes without blocking the calling thread.
+ * <p>
+ * The processes are run by a bounded pool of daemon threads. Each thread launches a process and reads its standard
+ * output, while the standard error is discarded by the operating system, so a process can never block on a full pipe
+ * and commands that wait for a free thread have no process running yet. The timeout applies from the call, including
+ * the time spent waiting for a free thread and reading the output: when it expires, the result completes exceptionally
+ * with a {@link TimeoutException} and the process is destroyed. Completing the result in any other way, including
+ * cancelling it, destroys the process as well, so a process never outlives its result.
+ */
+final class ProcessRunner {
+
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final int MAX_PROCESSES = 4;
+    private static final File NULL_DEVICE = new File(System.getProperty("os.name").toLowerCase().contains("windows") ? "NUL" : "/dev/null");
+
+    private static final ThreadPoolExecutor PROCESS_RUNNERS = createProcessRunners();
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = createTimeoutScheduler();
+
+    /**
+     * Processes the standard output of a process, for example by reading it fully or line by line.
+     */
+    @FunctionalInterface
+    interface OutputProcessor<T> {
+
+        T process(InputStream output) throws IOException;
+
+    }
+
+    /**
+     * Returns the trimmed standard output of the given command, or {@code null} if the command fails.
+     */
+    static CompletableFuture<String> execAndGetStdOut(Duration timeout, String... args) {
+        return exec(timeout, ProcessRunner::readText, args);
+    }
+
+    /**
+     * Passes each line of the standard output of the given command to the given processor and returns whether the
+     * command succeeded.
+     */
+    static CompletableFuture<Boolean> execAndProcessStdOutLines(Duration timeout, Consumer<String> lineProcessor, String... args) {
+        return exec(timeout, output -> {
+            readLines(output, lineProcessor);
+            return true;
+        }, args).handle((success, failure) -> success != null);
+    }
+
+    static CompletableFuture<Boolean> execAndCheckSuccess(Duration timeout, String... args) {
+        return execAndProcessStdOutLines(timeout, line -> {
+        }, args);
+    }
+
+    /**
+     * Runs the given command and completes with the result of processing its standard output, or with {@code null} if
+     * the command exits with a non-zero exit code.
+     */
+    static <T> CompletableFuture<T> exec(Duration timeout, OutputProcessor<? extends T> stdOutProcessor, String... args) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeoutTask = TIMEOUTS.schedule(() -> {
+            result.completeExceptionally(new TimeoutException("Process did not complete within " + timeout + ": " + String.join(" ", args)));
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, failure) -> timeoutTask.cancel(false));
+
+        try {
+            PROCESS_RUNNERS.execute(() -> run(result, stdOutProcessor, args));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a long-lived process that is interacted with through its standard input and output. Its standard error is
+     * discarded, and the process is destroyed once the given timeout expires.
+     */
+    static Process start(Duration timeout, String... args) throws IOException {
+        Process process = launch(args);
+        TIMEOUTS.schedule(process::destroyForcibly, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        return process;
+    }
+
+    /**
+     * Waits for the given result and returns it, or returns {@code null} if the result completed exceptionally.
+     */
+    static <T> T getOrNull(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return null;
+        } catch (ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Passes each line of the given output to the given processor.
+     */
+    static void readLines(InputStream output, Consumer<String> lineProcessor) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(output, Charset.defaultCharset()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineProcessor.accept(line);
+        }
+    }
+
+    /**
+     * Returns the full text of the given output, trimmed at the end.
+     */
+    static String readText(InputStream output) throws IOException {
+        Reader reader = new InputStreamReader(output, Charset.defaultCharset());
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[1024];
+        int nRead;
+        while ((nRead = reader.read(buf)) != -1) {
+            sb.append(buf, 0, nRead);
+        }
+        return trimAtEnd(sb.toString());
+    }
+
+    static String trimAtEnd(String str) {
+        return ('x' + str).trim().substring(1);
+    }
+
+    private static <T> void run(CompletableFuture<T> result, OutputProcessor<? extends T> stdOutProcessor, String... args) {
+        if (result.isDone()) {
+            // cancelled or timed out while waiting for a free thread
+            return;
+        }
+
+        Process process;
+        try {
+            process = launch(args);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        result.whenComplete((value, failure) -> process.destroyForcibly());
+
+        try (InputStream stdOut = process.getInputStream()) {
+            T value = stdOutProcessor.process(stdOut);
+            result.complete(process.waitFor() == 0 ? value : null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        } catch (IOException | RuntimeException e) {
+            // also reached when the process is destroyed while its output is read
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static Process launch(String... args) throws IOException {
+        return new ProcessBuilder(args).redirectError(ProcessBuilder.Redirect.to(NULL_DEVICE)).start();
+    }
+
+    private static ThreadPoolExecutor createProcessRunners() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PROCESSES, MAX_PROCESSES, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new DaemonThreadFactory("common-custom-user-data-process-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("common-custom-user-data-process-timeout-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setKeepAliveTime(1, TimeUnit.MINUTES);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
+    }
+
+    private ProcessRunner() {
+    }
+
+}
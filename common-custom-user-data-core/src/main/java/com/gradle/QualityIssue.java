@@ -0,0 +1,109 @@
+package com.gradle;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * An issue found by a quality check tool, as read from its XML report.
+ * <p>
+ * The reports of FindBugs and SpotBugs only hold the path of a file relative to one of the listed source directories.
+ * Such a path is resolved against the file system once the issue is collected, since the resolution may change while
+ * the report stays the same, e.g. when a source file is moved.
+ */
+final class QualityIssue {
+
+    private final String filePath;
+    private final String line;
+    private final String column;
+    private final String rule;
+    private final String message;
+    private final List<String> sourceDirs; // null once the file path is resolved
+
+    QualityIssue(String filePath, String line, String column, String rule, String message) {
+        this(filePath, line, column, rule, message, null);
+    }
+
+    /**
+     * Creates an issue whose file path still needs to be resolved against the given source directories.
+     */
+    QualityIssue(String filePath, String line, String column, String rule, String message, List<String> sourceDirs) {
+        this.filePath = filePath;
+        this.line = line;
+        this.column = column;
+        this.rule = rule;
+        this.message = message;
+        this.sourceDirs = sourceDirs;
+    }
+
+    /**
+     * The absolute path of the file the issue was found in, or the unresolved path if {@link #getSourceDirs()} is not
+     * {@code null}.
+     */
+    String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * The line, or the range of lines, the issue was found at.
+     */
+    String getLine() {
+        return line;
+    }
+
+    String getColumn() {
+        return column;
+    }
+
+    String getRule() {
+        return rule;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    List<String> getSourceDirs() {
+        return sourceDirs;
+    }
+
+    QualityIssue withFilePath(String filePath) {
+        return new QualityIssue(filePath, line, column, rule, message);
+    }
+
+    /**
+     * Resolves the path of the file the issue was found in against the source directories, if it is not resolved yet.
+     */
+    String resolveFilePath() {
+        if (sourceDirs == null) {
+            return filePath;
+        }
+        // depending on the build tool, the source directories or the source files themselves are listed
+        for (String sourceDir : sourceDirs) {
+            if (sourceDir.endsWith(filePath)) {
+                return sourceDir;
+            }
+        }
+        for (String sourceDir : sourceDirs) {
+            File file = new File(sourceDir, filePath);
+            if (file.exists()) {
+                return file.getAbsolutePath();
+            }
+        }
+        return filePath;
+    }
+
+    /**
+     * Formats the issue as {@code <path>:<line>[:<column>]}, followed by an arrow and the message.
+     */
+    String format() {
+        StringBuilder text = new StringBuilder(filePath != null ? filePath : "");
+        if (line != null) {
+            text.append(':').append(line);
+        }
+        if (column != null) {
+            text.append(':').append(column);
+        }
+        return text.append(" \u2192 ").append(message).toString();
+    }
+
+}
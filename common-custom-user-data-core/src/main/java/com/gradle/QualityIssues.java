@@ -0,0 +1,219 @@
+package com.gradle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects the issues found by quality check tools from their XML reports, with the paths of the files the issues were
+ * found in made relative to the root directory of the build.
+ * <p>
+ * The reports are read in the background by a bounded number of threads, in parallel to each other and to the build, and
+ * the issues are only joined once they are reported. The issues of each tool are reported ordered by report file, no
+ * matter in which order the reports were read.
+ * <p>
+ * Instead of one custom value per issue, the issues can be summarized by their number per rule and per file, together
+ * with a sample of the issues, in which case all issues are written to a compressed file instead.
+ * <p>
+ * The issues parsed from a report can be cached between builds, keyed on the content of the report.
+ */
+final class QualityIssues {
+
+    private static final int MAX_THREADS = 4;
+
+    private final Path rootDir;
+    private final int summaryMaxSamples;
+    private final File detailsFile;
+    private final QualityReportCache cache; // null to not cache the parsed reports
+    private final ThreadPoolExecutor executor;
+    private final List<Future<?>> pendingReports = new ArrayList<>();
+    private final Map<QualityReportFormat, Map<String, List<QualityIssue>>> issues = new EnumMap<>(QualityReportFormat.class);
+
+    /**
+     * A negative number of samples reports each issue individually, otherwise the issues are summarized, reporting the
+     * given number of issues, and of rules and files with the most issues, per tool, and all issues are written to the
+     * given file.
+     */
+    QualityIssues(File rootDir, int summaryMaxSamples, File detailsFile, File cacheDir) {
+        this.rootDir = rootDir.toPath().toAbsolutePath().normalize();
+        this.summaryMaxSamples = summaryMaxSamples;
+        this.detailsFile = detailsFile;
+        this.cache = cacheDir != null ? new QualityReportCache(cacheDir.toPath()) : null;
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() / 2));
+        this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory("common-custom-user-data-quality-reports-"));
+        // no threads are kept while no reports are being read
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts reading the issues of the given report in the background, if it exists. A report that cannot be read is
+     * ignored.
+     */
+    void collect(QualityReportFormat format, File report) {
+        if (!report.isFile()) {
+            return;
+        }
+
+        synchronized (pendingReports) {
+            pendingReports.add(executor.submit(() -> read(format, report)));
+        }
+    }
+
+    /**
+     * Waits for all reports to be read, and passes each collected issue or their summary to the given consumer as custom
+     * values, named after the tool that found them.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        List<Future<?>> reports;
+        synchronized (pendingReports) {
+            reports = new ArrayList<>(pendingReports);
+            pendingReports.clear();
+        }
+        for (Future<?> report : reports) {
+            try {
+                report.get();
+            } catch (ExecutionException ignored) {
+                // the issues of other reports are still reported
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (cache != null) {
+            cache.prune();
+        }
+
+        synchronized (issues) {
+            if (summaryMaxSamples < 0) {
+                issues.forEach((format, reportIssues) -> reportIssues.values().forEach(formatIssues ->
+                    formatIssues.forEach(issue -> customValues.accept("Verification " + format.getDisplayName(), issue.format()))
+                ));
+            } else if (!issues.isEmpty()) {
+                issues.forEach((format, reportIssues) -> summarize(format, reportIssues, customValues));
+                if (writeDetails()) {
+                    customValues.accept("Verification details", detailsFile.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops reading the reports that have not been read yet.
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    private void summarize(QualityReportFormat format, Map<String, List<QualityIssue>> reportIssues, BiConsumer<String, String> customValues) {
+        String valueName = "Verification " + format.getDisplayName();
+        Map<String, Integer> issuesPerRule = new HashMap<>();
+        Map<String, Integer> issuesPerFile = new HashMap<>();
+        List<QualityIssue> samples = new ArrayList<>();
+        int count = 0;
+        for (List<QualityIssue> formatIssues : reportIssues.values()) {
+            for (QualityIssue issue : formatIssues) {
+                issuesPerRule.merge(String.valueOf(issue.getRule()), 1, Integer::sum);
+                issuesPerFile.merge(String.valueOf(issue.getFilePath()), 1, Integer::sum);
+                if (samples.size() < summaryMaxSamples) {
+                    samples.add(issue);
+                }
+                count++;
+            }
+        }
+
+        customValues.accept(valueName + " summary", count + " issues in " + issuesPerFile.size() + " files, " + issuesPerRule.size() + " rules");
+        mostFrequentFirst(issuesPerRule, summaryMaxSamples, (rule, issuesOfRule) -> customValues.accept(valueName + " rule", rule + ": " + issuesOfRule));
+        if (issuesPerRule.size() > summaryMaxSamples) {
+            customValues.accept(valueName + " rule", "\u2026 " + (issuesPerRule.size() - summaryMaxSamples) + " more rules");
+        }
+        mostFrequentFirst(issuesPerFile, summaryMaxSamples, (file, issuesOfFile) -> customValues.accept(valueName + " file", file + ": " + issuesOfFile));
+        samples.forEach(issue -> customValues.accept(valueName, issue.format()));
+    }
+
+    private static void mostFrequentFirst(Map<String, Integer> counts, int max, BiConsumer<String, Integer> consumer) {
+        counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(max)
+            .forEach(e -> consumer.accept(e.getKey(), e.getValue()));
+    }
+
+    private boolean writeDetails() {
+        try {
+            Files.createDirectories(detailsFile.getParentFile().toPath());
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(detailsFile.toPath())), StandardCharsets.UTF_8))) {
+                for (Map.Entry<QualityReportFormat, Map<String, List<QualityIssue>>> formatIssues : issues.entrySet()) {
+                    for (List<QualityIssue> reportIssues : formatIssues.getValue().values()) {
+                        for (QualityIssue issue : reportIssues) {
+                            writer.write(formatIssues.getKey().getDisplayName() + '\t' + issue.format() + '\n');
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void read(QualityReportFormat format, File report) {
+        // unchanged reports are served from the issues cached by a previous build
+        Optional<String> cacheKey = cache != null ? QualityReportCache.computeKey(format, report) : Optional.empty();
+        Optional<List<QualityIssue>> cachedIssues = cacheKey.flatMap(key -> cache.load(key));
+        List<QualityIssue> parsedIssues;
+        if (cachedIssues.isPresent()) {
+            parsedIssues = cachedIssues.get();
+        } else {
+            parsedIssues = new ArrayList<>();
+            try (InputStream input = new BufferedInputStream(new FileInputStream(report))) {
+                format.parse(input, parsedIssues::add);
+            } catch (IOException ignored) {
+                // a report truncated by a failing tool must not fail the build
+                return;
+            }
+            cacheKey.ifPresent(key -> cache.store(key, parsedIssues));
+        }
+
+        // the files are resolved after loading cached issues, as the file system may have changed since they were parsed
+        Map<String, String> resolvedPaths = new HashMap<>();
+        List<QualityIssue> reportIssues = new ArrayList<>(parsedIssues.size());
+        for (QualityIssue issue : parsedIssues) {
+            String filePath = issue.getSourceDirs() != null ? resolvedPaths.computeIfAbsent(issue.getFilePath(), p -> issue.resolveFilePath()) : issue.getFilePath();
+            reportIssues.add(issue.withFilePath(relativePath(filePath)));
+        }
+        synchronized (issues) {
+            issues.computeIfAbsent(format, f -> new TreeMap<>()).put(report.getAbsolutePath(), reportIssues);
+        }
+    }
+
+    private String relativePath(String filePath) {
+        if (filePath == null) {
+            return "";
+        }
+        Path path = Paths.get(filePath);
+        return path.isAbsolute() && path.startsWith(rootDir) ? rootDir.relativize(path).toString() : filePath;
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.gradle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persists the issues parsed from quality check reports between builds.
+ * <p>
+ * The issues are keyed on the SHA-256 hash of the format and the content of a report, so a report that was not changed by
+ * an up-to-date task or was restored from the build cache only costs hashing it. Each report is stored in a compressed
+ * binary file of its own, and the files not used for a while are deleted.
+ * <p>
+ * The issues are stored as parsed, before their files are resolved against the source directories listed by the report,
+ * since the report does not determine that resolution.
+ */
+final class QualityReportCache {
+
+    // incremented whenever the parsing of the reports or the layout of the files changes
+    private static final int VERSION = 2;
+    private static final Duration MAX_UNUSED_AGE = Duration.ofDays(7);
+    private static final String SUFFIX = ".bin";
+    // the five string lengths and the index of the source directories of an issue
+    private static final int MIN_ISSUE_BYTES = 6 * 4;
+
+    private final Path cacheDir;
+
+    QualityReportCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    static Optional<String> computeKey(QualityReportFormat format, File report) {
+        try (InputStream input = Files.newInputStream(report.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(format.name().getBytes(StandardCharsets.UTF_8));
+            byte[] buffer = new byte[65536];
+            int nRead;
+            while ((nRead = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, nRead);
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return Optional.of(key.toString());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return Optional.empty();
+        }
+    }
+
+    Optional<List<QualityIssue>> load(String key) {
+        Path entry = cacheDir.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(entry)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(entry))))) {
+            if (input.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            // a corrupt entry must not make the build allocate more than the decoded entry holds
+            long decodedSize = readDecodedSize(entry);
+            List<List<String>> sourceDirs = new ArrayList<>();
+            int sourceDirsCount = readCount(input, decodedSize, 4);
+            for (int i = 0; i < sourceDirsCount; i++) {
+                int dirCount = readCount(input, decodedSize, 4);
+                List<String> dirs = new ArrayList<>(dirCount);
+                for (int j = 0; j < dirCount; j++) {
+                    dirs.add(readString(input, decodedSize));
+                }
+                sourceDirs.add(dirs);
+            }
+            int count = readCount(input, decodedSize, MIN_ISSUE_BYTES);
+            List<QualityIssue> issues = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String filePath = readString(input, decodedSize);
+                String line = readString(input, decodedSize);
+                String column = readString(input, decodedSize);
+                String rule = readString(input, decodedSize);
+                String message = readString(input, decodedSize);
+                int sourceDirsIndex = input.readInt();
+                if (sourceDirsIndex < -1 || sourceDirsIndex >= sourceDirs.size()) {
+                    return Optional.empty();
+                }
+                issues.add(new QualityIssue(filePath, line, column, rule, message, sourceDirsIndex >= 0 ? sourceDirs.get(sourceDirsIndex) : null));
+            }
+            // used entries are kept
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(issues);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    void store(String key, List<QualityIssue> issues) {
+        try {
+            Utils.writeAtomically(cacheDir.resolve(key + SUFFIX), file -> {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(file)))) {
+                    output.writeInt(VERSION);
+                    // the issues of a report share the same source directories, which are only written once
+                    Map<List<String>, Integer> sourceDirsIndices = new IdentityHashMap<>();
+                    for (QualityIssue issue : issues) {
+                        if (issue.getSourceDirs() != null) {
+                            sourceDirsIndices.putIfAbsent(issue.getSourceDirs(), sourceDirsIndices.size());
+                        }
+                    }
+                    List<List<String>> sourceDirs = new ArrayList<>(sourceDirsIndices.keySet());
+                    sourceDirs.sort(Comparator.comparing(sourceDirsIndices::get));
+                    output.writeInt(sourceDirs.size());
+                    for (List<String> dirs : sourceDirs) {
+                        output.writeInt(dirs.size());
+                        for (String dir : dirs) {
+                            writeString(output, dir);
+                        }
+                    }
+                    output.writeInt(issues.size());
+                    for (QualityIssue issue : issues) {
+                        writeString(output, issue.getFilePath());
+                        writeString(output, issue.getLine());
+                        writeString(output, issue.getColumn());
+                        writeString(output, issue.getRule());
+                        writeString(output, issue.getMessage());
+                        output.writeInt(issue.getSourceDirs() != null ? sourceDirsIndices.get(issue.getSourceDirs()) : -1);
+                    }
+                }
+            });
+        } catch (IOException ignored) {
+            // the cache is an optimization only, the report will be parsed again by the next build
+        }
+    }
+
+    /**
+     * Deletes the entries that have not been used for a while.
+     */
+    void prune() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+
+        long oldestUsed = System.currentTimeMillis() - MAX_UNUSED_AGE.toMillis();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, "*" + SUFFIX)) {
+            for (Path entry : entries) {
+                if (Files.getLastModifiedTime(entry).toMillis() < oldestUsed) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        } catch (IOException ignored) {
+            // the entries will be pruned by the next build
+        }
+    }
+
+    /**
+     * Reads the size of the decoded entry from the trailer of the gzip file, which holds it modulo 2^32.
+     */
+    private static long readDecodedSize(Path entry) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(entry)) {
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(channel.size() - trailer.capacity());
+            while (trailer.hasRemaining() && channel.read(trailer) != -1) {
+                // read the whole trailer
+            }
+            if (trailer.hasRemaining()) {
+                throw new IOException("Truncated entry: " + entry);
+            }
+            return trailer.getInt(0) & 0xFFFFFFFFL;
+        }
+    }
+
+    private static int readCount(DataInputStream input, long decodedSize, int minElementBytes) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count > decodedSize / minElementBytes) {
+            throw new IOException("Corrupt count: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        // unlike writeUTF, not limited to 64 KB
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream input, long decodedSize) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > decodedSize) {
+            throw new IOException("Corrupt string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
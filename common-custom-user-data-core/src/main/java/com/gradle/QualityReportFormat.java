@@ -0,0 +1,184 @@
+package com.gradle;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.gradle.Utils.appendIfMissing;
+
+/**
+ * The XML report formats of the supported quality check tools.
+ * <p>
+ * Each report is streamed once with StAX, and each issue is passed on as soon as it has been read, so parsing a report
+ * takes memory independent of the size of the report. Only the source directories listed by FindBugs and SpotBugs are
+ * kept while reading, and passed on with the issues to resolve their files against.
+ */
+enum QualityReportFormat {
+
+    CHECKSTYLE("Checkstyle") {
+        @Override
+        void read(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException {
+            String file = null;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (reader.getLocalName().equals("file")) {
+                        file = attribute(reader, "name");
+                    } else if (reader.getLocalName().equals("error")) {
+                        issues.accept(new QualityIssue(file, attribute(reader, "line"), attribute(reader, "column"), attribute(reader, "source"), attribute(reader, "message")));
+                    }
+                }
+            }
+        }
+    },
+
+    CODENARC("CodeNarc") {
+        @Override
+        void read(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException {
+            String sourceDirectory = "";
+            String file = null;
+            String rule = null;
+            String line = null;
+            String message = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "SourceDirectory":
+                            sourceDirectory = appendIfMissing(reader.getElementText().trim(), "/");
+                            break;
+                        case "File":
+                            file = sourceDirectory + attribute(reader, "name");
+                            break;
+                        case "Violation":
+                            rule = attribute(reader, "ruleName");
+                            line = attribute(reader, "lineNumber");
+                            message = null;
+                            break;
+                        case "Message":
+                            message = reader.getElementText();
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("Violation")) {
+                    issues.accept(new QualityIssue(file, line, null, rule, message != null ? message : rule));
+                }
+            }
+        }
+    },
+
+    FINDBUGS("FindBugs") {
+        @Override
+        void read(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException {
+            readBugInstances(reader, issues);
+        }
+    },
+
+    SPOTBUGS("SpotBugs") {
+        @Override
+        void read(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException {
+            readBugInstances(reader, issues);
+        }
+    };
+
+    // the source line of a bug instance is preferably taken from the bug instance itself, then from its method and class
+    private static final List<String> SOURCE_LINE_PARENTS = Arrays.asList("BugInstance", "Method", "Class");
+
+    private final String displayName;
+
+    QualityReportFormat(String displayName) {
+        this.displayName = displayName;
+    }
+
+    String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Passes each issue of the given report to the given consumer.
+     */
+    void parse(InputStream report, Consumer<QualityIssue> issues) throws IOException {
+        try {
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(report);
+            try {
+                read(reader, issues);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse " + displayName + " report", e);
+        }
+    }
+
+    abstract void read(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException;
+
+    private static void readBugInstances(XMLStreamReader reader, Consumer<QualityIssue> issues) throws XMLStreamException {
+        List<String> srcDirs = new ArrayList<>();
+        // the names of the elements enclosing the current element within a bug instance
+        List<String> path = new ArrayList<>();
+        String type = null;
+        int sourceLinePriority = Integer.MAX_VALUE;
+        String start = null;
+        String end = null;
+        String sourcePath = null;
+        String shortMessage = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("BugInstance")) {
+                    path.clear();
+                    type = attribute(reader, "type");
+                    sourceLinePriority = Integer.MAX_VALUE;
+                    start = end = sourcePath = shortMessage = null;
+                } else if (name.equals("SrcDir") && type == null) {
+                    srcDirs.add(reader.getElementText().trim());
+                    continue;
+                } else if (name.equals("ShortMessage") && path.size() == 1) {
+                    shortMessage = reader.getElementText().trim();
+                    continue;
+                } else if (name.equals("SourceLine") && type != null) {
+                    int priority = SOURCE_LINE_PARENTS.indexOf(path.get(path.size() - 1));
+                    if (priority >= 0 && priority < sourceLinePriority) {
+                        sourceLinePriority = priority;
+                        start = attribute(reader, "start");
+                        end = attribute(reader, "end");
+                        sourcePath = attribute(reader, "sourcepath");
+                    }
+                }
+                if (type != null) {
+                    path.add(name);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && type != null) {
+                path.remove(path.size() - 1);
+                if (path.isEmpty()) {
+                    if (sourcePath != null) {
+                        String line = start == null || start.equals(end) ? start : start + "-" + end;
+                        issues.accept(new QualityIssue(sourcePath, line, null, type, shortMessage != null ? shortMessage : type, srcDirs));
+                    }
+                    type = null;
+                }
+            }
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // the reports never need a DTD, and resolving external entities would allow reading arbitrary files
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.gradle;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Environment that reads environment variables and system properties directly from the running JVM, for the capturing of
+ * CI metadata once the build is executing. Project properties are not available.
+ */
+final class SystemCiEnvironment implements CiEnvironment {
+
+    private final Map<String, Optional<String>> envVariables = new HashMap<>();
+    private final Map<String, Optional<String>> sysProperties = new HashMap<>();
+
+    @Override
+    public Optional<String> envVariable(String name) {
+        return envVariables.computeIfAbsent(name, n -> Optional.ofNullable(System.getenv(n)));
+    }
+
+    @Override
+    public Optional<String> sysProperty(String name) {
+        return sysProperties.computeIfAbsent(name, n -> Optional.ofNullable(System.getProperty(n)));
+    }
+
+    @Override
+    public Optional<String> projectProperty(String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Properties readPropertiesFile(String name) {
+        try (InputStream input = new FileInputStream(name)) {
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void withProjectProperties(Runnable action) {
+        action.run();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.gradle;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Answers prefix queries over the keys of the system properties in logarithmic time.
+ * <p>
+ * The keys are sorted into an array the first time they are queried, and the array is only rebuilt once the system
+ * properties have been replaced or their keys have changed, as detected by the hash code of the key set. Computing that
+ * hash code only sums the cached hash codes of the keys, which is much cheaper than sorting them again. A key found in
+ * the index is checked to still be present, so the index never returns a key that has since been removed.
+ */
+final class SystemPropertyKeyIndex {
+
+    private static volatile SystemPropertyKeyIndex current;
+
+    private final Properties properties;
+    private final int keysHashCode;
+    private final String[] sortedKeys;
+
+    private SystemPropertyKeyIndex(Properties properties) {
+        this.properties = properties;
+        this.keysHashCode = properties.keySet().hashCode();
+        this.sortedKeys = Arrays.stream(properties.keySet().toArray())
+            .filter(s -> s instanceof String)
+            .map(s -> (String) s)
+            .sorted()
+            .toArray(String[]::new);
+    }
+
+    /**
+     * Returns the lexicographically smallest system property key that starts with the given prefix.
+     */
+    static Optional<String> firstKeyStartingWith(String keyPrefix) {
+        Properties properties = System.getProperties();
+        SystemPropertyKeyIndex index = current;
+        // a key that was replaced by another one, e.g. after an IDE update in a long-lived daemon, changes the hash code
+        if (index == null || index.properties != properties || index.keysHashCode != properties.keySet().hashCode()) {
+            index = new SystemPropertyKeyIndex(properties);
+            current = index;
+        }
+        return index.find(keyPrefix);
+    }
+
+    private Optional<String> find(String keyPrefix) {
+        int position = Arrays.binarySearch(sortedKeys, keyPrefix);
+        int firstCandidate = position >= 0 ? position : -position - 1;
+        for (int i = firstCandidate; i < sortedKeys.length && sortedKeys[i].startsWith(keyPrefix); i++) {
+            if (properties.containsKey(sortedKeys[i])) {
+                return Optional.of(sortedKeys[i]);
+            }
+        }
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.gradle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Helpers that are independent of the build tool and shared by the Gradle plugin and the Maven extension.
+ */
+final class Utils {
+
+    interface ContentWriter {
+
+        void write(OutputStream output) throws IOException;
+
+    }
+
+    static boolean isNotEmpty(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    static String stripPrefix(String prefix, String string) {
+        return string.startsWith(prefix) ? string.substring(prefix.length()) : string;
+    }
+
+    static String appendIfMissing(String str, String suffix) {
+        return str.endsWith(suffix) ? str : str + suffix;
+    }
+
+    static URI appendPathAndTrailingSlash(URI baseUri, String path) {
+        if (isNotEmpty(path)) {
+            String normalizedBasePath = appendIfMissing(baseUri.getPath(), "/");
+            String normalizedPath = appendIfMissing(stripPrefix("/", path), "/");
+            return baseUri.resolve(normalizedBasePath).resolve(normalizedPath);
+        }
+        return baseUri;
+    }
+
+    static String urlEncode(String str) {
+        try {
+            return URLEncoder.encode(str, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String formatSeconds(long millis) {
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000.0);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1fKiB", bytes / 1024.0);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1fMiB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.1fGiB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Writes the given file through a temporary file next to it that is moved into place once written, so that builds
+     * running concurrently never read a partially written file.
+     */
+    static void writeAtomically(Path file, ContentWriter content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                content.write(output);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Utils() {
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.gradle;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuiltInCiProviderTest {
+
+    private static final Set<String> STABLE_MARKERS = new HashSet<>(Arrays.asList(
+        "CI", "JENKINS_URL", "HUDSON_URL", "TEAMCITY_VERSION", "CIRCLECI", "bamboo_planKey", "GITHUB_ACTIONS", "GITLAB_CI", "TRAVIS", "BITRISE_IO"
+    ));
+
+    @ParameterizedTest
+    @CsvSource({
+        "CIRCLE_CI, CIRCLECI",
+        "BAMBOO, bamboo_planKey",
+        "TRAVIS, TRAVIS",
+        "BITRISE, BITRISE_IO",
+        "GITHUB_ACTIONS, GITHUB_ACTIONS",
+        "GITLAB, GITLAB_CI",
+        "JENKINS, JENKINS_URL",
+        "TEAM_CITY, TEAMCITY_VERSION"
+    })
+    void detectsCiSystemByStableMarkerOnly(BuiltInCiProvider provider, String marker) {
+        RecordingCiEnvironment environment = new RecordingCiEnvironment(Collections.singletonMap(marker, "true"));
+
+        List<CiProvider> detected = CiProviderRegistry.detect(environment);
+
+        assertEquals(Collections.singletonList(provider), detected);
+        // per-build values like build URLs or job ids must not become configuration cache inputs
+        assertTrue(STABLE_MARKERS.containsAll(environment.readVariables), () -> "read " + environment.readVariables);
+    }
+
+    private static final class RecordingCiEnvironment implements CiEnvironment {
+
+        private final Map<String, String> envVariables;
+        private final Set<String> readVariables = new TreeSet<>();
+
+        private RecordingCiEnvironment(Map<String, String> envVariables) {
+            this.envVariables = new HashMap<>(envVariables);
+        }
+
+        @Override
+        public Optional<String> envVariable(String name) {
+            readVariables.add(name);
+            return Optional.ofNullable(envVariables.get(name));
+        }
+
+        @Override
+        public Optional<String> sysProperty(String name) {
+            readVariables.add(name);
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> projectProperty(String name) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Properties readPropertiesFile(String name) {
+            return new Properties();
+        }
+
+        @Override
+        public void withProjectProperties(Runnable action) {
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares reading the repository URL, commit id and branch name from the repository files against forking git for each
+ * of them. Not run by default, run it with {@code -Dtest=GitMetadataReaderBenchmark}.
+ */
+class GitMetadataReaderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+
+    @TempDir
+    Path repository;
+
+    @Test
+    void forkedVersusInProcess() throws Exception {
+        assumeTrue(git("--version") != null, "git is not installed");
+        git("init", "-q");
+        git("symbolic-ref", "HEAD", "refs/heads/main");
+        git("config", "remote.origin.url", "git@github.com:acme/project.git");
+        Files.write(repository.resolve("file.txt"), "content".getBytes());
+        git("add", "file.txt");
+        git("-c", "user.name=benchmark", "-c", "user.email=benchmark@example.com", "commit", "-q", "-m", "commit");
+        git("pack-refs", "--all");
+
+        Supplier<String[]> forked = () -> new String[]{
+            git("config", "--get", "remote.origin.url"),
+            git("rev-parse", "--verify", "HEAD"),
+            git("rev-parse", "--abbrev-ref", "HEAD")
+        };
+        Supplier<String[]> inProcess = () -> {
+            GitMetadataReader reader = GitMetadataReader.forDirectory(repository).orElseThrow(AssertionError::new);
+            return new String[]{
+                reader.readRepositoryUrl().orElse(null),
+                reader.readCommitId().orElse(null),
+                reader.readBranchName().orElse(null)
+            };
+        };
+        assertArrayEquals(forked.get(), inProcess.get());
+
+        long forkedNanos = measure(forked);
+        long inProcessNanos = measure(inProcess);
+        System.out.printf("forked git:     %8.3f ms per capture%n", forkedNanos / 1_000_000.0);
+        System.out.printf("in-process:     %8.3f ms per capture%n", inProcessNanos / 1_000_000.0);
+        System.out.printf("speedup:        %8.1fx%n", (double) forkedNanos / inProcessNanos);
+    }
+
+    private static long measure(Supplier<String[]> capture) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            capture.get();
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            capture.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        // the median is not skewed by the occasional slow fork
+        Arrays.sort(nanos);
+        return nanos[ITERATIONS / 2];
+    }
+
+    private String git(String... args) {
+        String[] command = new String[args.length + 3];
+        command[0] = "git";
+        command[1] = "-C";
+        command[2] = repository.toString();
+        System.arraycopy(args, 0, command, 3, args.length);
+        return ProcessRunner.getOrNull(ProcessRunner.execAndGetStdOut(Duration.ofSeconds(10), command));
+    }
+
+}
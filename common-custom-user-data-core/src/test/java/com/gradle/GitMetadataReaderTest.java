@@ -0,0 +1,219 @@
+package com.gradle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GitMetadataReaderTest {
+
+    private static final String COMMIT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER_COMMIT_ID = "fedcba9876543210fedcba9876543210fedcba98";
+
+    @TempDir
+    Path workingDir;
+
+    private Path gitDir;
+
+    @BeforeEach
+    void createRepository() throws IOException {
+        gitDir = Files.createDirectories(workingDir.resolve(".git"));
+        Files.createDirectories(gitDir.resolve("refs/heads"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main");
+    }
+
+    @Test
+    void readsLooseRef() throws IOException {
+        write(gitDir.resolve("refs/heads/main"), COMMIT_ID);
+
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+        assertEquals(Optional.of("01234567"), reader.readCommitShortId());
+        assertEquals(Optional.of("main"), reader.readBranchName());
+    }
+
+    @Test
+    void readsRefFromPackedRefsOnly() throws IOException {
+        write(gitDir.resolve("packed-refs"),
+            "# pack-refs with: peeled fully-peeled sorted",
+            OTHER_COMMIT_ID + " refs/heads/feature",
+            COMMIT_ID + " refs/heads/main",
+            "^" + OTHER_COMMIT_ID);
+
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+        assertEquals(Optional.of("main"), reader.readBranchName());
+    }
+
+    @Test
+    void prefersLooseRefOverPackedRef() throws IOException {
+        write(gitDir.resolve("packed-refs"), OTHER_COMMIT_ID + " refs/heads/main");
+        write(gitDir.resolve("refs/heads/main"), COMMIT_ID);
+
+        assertEquals(Optional.of(COMMIT_ID), reader().readCommitId());
+    }
+
+    @Test
+    void readsDetachedHead() throws IOException {
+        write(gitDir.resolve("HEAD"), COMMIT_ID);
+
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+        assertEquals(Optional.of("HEAD"), reader.readBranchName());
+    }
+
+    @Test
+    void readsUnbornBranchAsEmptyValues() throws IOException {
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(""), reader.readCommitId());
+        assertEquals(Optional.of(""), reader.readCommitShortId());
+        assertEquals(Optional.of(""), reader.readBranchName());
+    }
+
+    @Test
+    void resolvesHeadOnlyOnce() throws IOException {
+        write(gitDir.resolve("refs/heads/main"), COMMIT_ID);
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+
+        write(gitDir.resolve("refs/heads/main"), OTHER_COMMIT_ID);
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+        assertEquals(Optional.of("01234567"), reader.readCommitShortId());
+    }
+
+    @Test
+    void readsBranchNameOfHeadResolvedBefore() throws IOException {
+        write(gitDir.resolve("refs/heads/main"), COMMIT_ID);
+        write(gitDir.resolve("refs/heads/feature"), OTHER_COMMIT_ID);
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/feature");
+        assertEquals(Optional.of("main"), reader.readBranchName());
+    }
+
+    @Test
+    void rejectsMalformedRef() throws IOException {
+        write(gitDir.resolve("refs/heads/main"), "not an object id");
+
+        assertEquals(Optional.empty(), reader().readCommitId());
+    }
+
+    @Test
+    void readsLinkedWorktreeThroughGitdirAndCommondir() throws IOException {
+        write(gitDir.resolve("refs/heads/main"), COMMIT_ID);
+        write(gitDir.resolve("refs/heads/feature"), OTHER_COMMIT_ID);
+        write(gitDir.resolve("config"), "[remote \"origin\"]", "\turl = git@github.com:acme/project.git");
+
+        Path worktreeGitDir = Files.createDirectories(gitDir.resolve("worktrees/feature"));
+        write(worktreeGitDir.resolve("HEAD"), "ref: refs/heads/feature");
+        write(worktreeGitDir.resolve("commondir"), "../..");
+        Path worktree = Files.createDirectories(workingDir.resolve("feature-worktree"));
+        write(worktree.resolve(".git"), "gitdir: " + worktreeGitDir);
+
+        GitMetadataReader reader = GitMetadataReader.forDirectory(worktree.resolve("src")).orElseThrow(AssertionError::new);
+        assertEquals(worktreeGitDir, reader.getGitDir());
+        assertEquals(gitDir, reader.getCommonDir());
+        assertEquals(Optional.of(OTHER_COMMIT_ID), reader.readCommitId());
+        assertEquals(Optional.of("feature"), reader.readBranchName());
+        assertEquals(Optional.of("git@github.com:acme/project.git"), reader.readRepositoryUrl());
+    }
+
+    @Test
+    void readsRelativeGitdirOfSubmodule() throws IOException {
+        Path moduleGitDir = Files.createDirectories(gitDir.resolve("modules/lib"));
+        write(moduleGitDir.resolve("HEAD"), COMMIT_ID);
+        Path submodule = Files.createDirectories(workingDir.resolve("lib"));
+        write(submodule.resolve(".git"), "gitdir: ../.git/modules/lib");
+
+        GitMetadataReader reader = GitMetadataReader.forDirectory(submodule).orElseThrow(AssertionError::new);
+        assertEquals(moduleGitDir, reader.getGitDir());
+        assertEquals(Optional.of(COMMIT_ID), reader.readCommitId());
+    }
+
+    @Test
+    void readsLastValueOfConfigKey() throws IOException {
+        write(gitDir.resolve("config"),
+            "[core]",
+            "\tbare = false",
+            "[remote \"upstream\"]",
+            "\turl = https://example.com/upstream.git",
+            "[remote \"origin\"]",
+            "\turl = https://example.com/first.git",
+            "\tURL = \"https://example.com/second.git\" ; comment");
+
+        assertEquals(Optional.of("https://example.com/second.git"), reader().readRepositoryUrl());
+    }
+
+    @Test
+    void readsEmptyConfigValue() throws IOException {
+        write(gitDir.resolve("config"), "[remote \"origin\"]", "\turl =");
+
+        assertEquals(Optional.of(""), reader().readRepositoryUrl());
+    }
+
+    @Test
+    void readsMissingConfigKeyAsEmptyValue() throws IOException {
+        write(gitDir.resolve("config"), "[core]", "\tbare = false");
+
+        assertEquals(Optional.of(""), reader().readRepositoryUrl());
+    }
+
+    @Test
+    void readsWorktreeConfigOnlyIfEnabled() throws IOException {
+        write(gitDir.resolve("config"), "[remote \"origin\"]", "\turl = https://example.com/project.git");
+        write(gitDir.resolve("config.worktree"), "[remote \"origin\"]", "\turl = https://example.com/worktree.git");
+
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.of("https://example.com/project.git"), reader.readRepositoryUrl());
+        assertEquals(1, reader.getConfigFiles().size());
+
+        write(gitDir.resolve("config"), "[extensions]", "\tworktreeConfig = true", "[remote \"origin\"]", "\turl = https://example.com/project.git");
+        reader = reader();
+        assertEquals(Optional.of("https://example.com/worktree.git"), reader.readRepositoryUrl());
+        assertEquals(2, reader.getConfigFiles().size());
+    }
+
+    @Test
+    void leavesConfigWithIncludesToGit() throws IOException {
+        write(gitDir.resolve("config"), "[include]", "\tpath = shared.config", "[remote \"origin\"]", "\turl = https://example.com/project.git");
+        write(gitDir.resolve("shared.config"), "[remote \"origin\"]", "\turl = https://example.com/other.git");
+
+        GitMetadataReader reader = reader();
+        assertEquals(Optional.empty(), reader.readRepositoryUrl());
+        assertEquals(3, reader.getConfigFiles().size());
+        assertEquals(gitDir.resolve("shared.config"), reader.getConfigFiles().get(1));
+    }
+
+    @Test
+    void leavesConfigWithLineContinuationToGit() throws IOException {
+        write(gitDir.resolve("config"), "[remote \"origin\"]", "\turl = https://example.com/\\", "project.git");
+
+        assertEquals(Optional.empty(), reader().readRepositoryUrl());
+    }
+
+    @Test
+    void readsNoRepositoryWithoutHead() throws IOException {
+        Files.delete(gitDir.resolve("HEAD"));
+
+        assertFalse(GitMetadataReader.forDirectory(workingDir).isPresent());
+    }
+
+    private GitMetadataReader reader() {
+        return GitMetadataReader.forDirectory(workingDir).orElseThrow(AssertionError::new);
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitSessionTest {
+
+    @Test
+    void resolvesRevisionsThroughOneProcess() {
+        assumeGitRepository();
+        String head = ProcessRunner.getOrNull(ProcessRunner.execAndGetStdOut(ProcessRunner.DEFAULT_TIMEOUT, "git", "rev-parse", "--verify", "HEAD"));
+
+        AtomicInteger starts = new AtomicInteger();
+        try (GitSession session = new GitSession(() -> {
+            starts.incrementAndGet();
+            return ProcessRunner.DEFAULT_TIMEOUT;
+        })) {
+            assertEquals(Optional.of(head), session.resolve("HEAD"));
+            assertEquals(Optional.of(head), session.resolve("HEAD^{commit}"));
+            assertFalse(session.resolve("refs/heads/ccud-test-branch-that-does-not-exist").isPresent());
+        }
+        assertEquals(1, starts.get());
+    }
+
+    @Test
+    void doesNotStartProcessOnceDeadlineHasPassed() {
+        try (GitSession session = new GitSession(() -> Duration.ZERO)) {
+            assertFalse(session.resolve("HEAD").isPresent());
+            assertFalse(session.resolve("HEAD").isPresent());
+        }
+    }
+
+    @Test
+    void failsLookupsOnceProcessIsDestroyedAtDeadline() throws InterruptedException {
+        assumeGitRepository();
+
+        try (GitSession session = new GitSession(Duration.ofMillis(200))) {
+            assertTrue(session.resolve("HEAD").isPresent());
+            Thread.sleep(1000);
+            assertFalse(session.resolve("HEAD").isPresent());
+        }
+    }
+
+    private static void assumeGitRepository() {
+        assumeTrue(Boolean.TRUE.equals(ProcessRunner.getOrNull(ProcessRunner.execAndCheckSuccess(ProcessRunner.DEFAULT_TIMEOUT, "git", "rev-parse", "--verify", "HEAD"))),
+            "not run within a Git repository with commits");
+    }
+
+}
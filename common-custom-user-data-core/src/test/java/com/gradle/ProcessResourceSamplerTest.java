@@ -0,0 +1,30 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProcessResourceSamplerTest {
+
+    @Test
+    void samplesBuildProcessAndItsChildren() throws IOException, InterruptedException {
+        assumeTrue(ProcessResourceSampler.isSupported(), "no /proc file system");
+        ProcessResourceSampler sampler = new ProcessResourceSampler(Duration.ofMillis(10));
+
+        sampler.start();
+        Process child = new ProcessBuilder("sleep", "0.3").start();
+        child.waitFor();
+        Map<String, String> customValues = new LinkedHashMap<>();
+        sampler.report(customValues::put);
+
+        assertTrue(customValues.getOrDefault("Process resources build", "").startsWith("processes=1, "), customValues.toString());
+        assertTrue(customValues.getOrDefault("Process resources other", "").startsWith("processes=1, "), customValues.toString());
+    }
+
+}
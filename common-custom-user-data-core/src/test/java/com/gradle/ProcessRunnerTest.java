@@ -0,0 +1,165 @@
+package com.gradle;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs fake child processes through a POSIX shell, and checks that a process is gone by the absence of its entry in
+ * {@code /proc}.
+ */
+@Timeout(30)
+class ProcessRunnerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+    private static final int PIPE_BUFFER_EXCEEDING_BYTES = 4 * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void requirePosixShellAndProcfs() {
+        assumeTrue(new File("/bin/sh").canExecute() && new File("/proc/self").isDirectory());
+    }
+
+    @Test
+    void drainsStdErrFloodLargerThanPipeBuffer() {
+        CompletableFuture<String> result = ProcessRunner.execAndGetStdOut(TIMEOUT,
+            "sh", "-c", "head -c " + PIPE_BUFFER_EXCEEDING_BYTES + " /dev/zero >&2; echo done");
+
+        assertEquals("done", ProcessRunner.getOrNull(result));
+    }
+
+    @Test
+    void drainsStdOutAndStdErrFloodsTogether() {
+        CompletableFuture<String> result = ProcessRunner.exec(TIMEOUT, output -> {
+            long count = 0;
+            while (output.read() != -1) {
+                count++;
+            }
+            return String.valueOf(count);
+        }, "sh", "-c", "head -c " + PIPE_BUFFER_EXCEEDING_BYTES + " /dev/zero >&2 & head -c " + PIPE_BUFFER_EXCEEDING_BYTES + " /dev/zero; wait");
+
+        assertEquals(String.valueOf(PIPE_BUFFER_EXCEEDING_BYTES), ProcessRunner.getOrNull(result));
+    }
+
+    @Test
+    void destroysChildHangingPastTimeout() throws Exception {
+        Path pidFile = tempDir.resolve("pid");
+        CompletableFuture<String> result = ProcessRunner.execAndGetStdOut(Duration.ofMillis(500), "sh", "-c", "echo $$ > " + pidFile + "; exec sleep 60");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+        assertTrue(failure.getCause() instanceof TimeoutException, failure.getCause().toString());
+        assertNull(ProcessRunner.getOrNull(result));
+        assertProcessIsGone(pidFile);
+    }
+
+    @Test
+    void destroysChildThatClosesItsOutputButKeepsRunning() throws Exception {
+        Path pidFile = tempDir.resolve("pid");
+        CompletableFuture<String> result = ProcessRunner.execAndGetStdOut(Duration.ofMillis(500), "sh", "-c", "echo $$ > " + pidFile + "; exec sleep 60 >&-");
+
+        assertNull(ProcessRunner.getOrNull(result));
+        assertProcessIsGone(pidFile);
+    }
+
+    @Test
+    void failsForMissingBinary() {
+        CompletableFuture<String> result = ProcessRunner.execAndGetStdOut(TIMEOUT, "ccud-test-binary-that-does-not-exist");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+        assertTrue(failure.getCause() instanceof IOException, failure.getCause().toString());
+        assertNull(ProcessRunner.getOrNull(result));
+    }
+
+    @Test
+    void yieldsNullForNonZeroExitCode() {
+        assertNull(ProcessRunner.getOrNull(ProcessRunner.execAndGetStdOut(TIMEOUT, "sh", "-c", "echo output; exit 3")));
+        assertEquals(false, ProcessRunner.getOrNull(ProcessRunner.execAndCheckSuccess(TIMEOUT, "sh", "-c", "exit 3")));
+    }
+
+    @Test
+    void destroysChildWhenResultIsCancelled() throws Exception {
+        Path pidFile = tempDir.resolve("pid");
+        CompletableFuture<String> result = ProcessRunner.execAndGetStdOut(TIMEOUT, "sh", "-c", "echo $$ > " + pidFile + "; exec sleep 60");
+        awaitPid(pidFile);
+
+        assertTrue(result.cancel(true));
+        assertNull(ProcessRunner.getOrNull(result));
+        assertProcessIsGone(pidFile);
+    }
+
+    @Test
+    void neverLaunchesCancelledCommandWaitingForFreeThread() throws Exception {
+        List<CompletableFuture<String>> blockers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            blockers.add(ProcessRunner.execAndGetStdOut(TIMEOUT, "sleep", "60"));
+        }
+        Path marker = tempDir.resolve("launched");
+        CompletableFuture<String> queued = ProcessRunner.execAndGetStdOut(TIMEOUT, "sh", "-c", "touch " + marker);
+        queued.cancel(true);
+        blockers.forEach(blocker -> blocker.cancel(true));
+
+        // a command submitted afterwards completes only once the queued one has been skipped
+        assertEquals("", ProcessRunner.getOrNull(ProcessRunner.execAndGetStdOut(TIMEOUT, "true")));
+        assertTrue(Files.notExists(marker));
+    }
+
+    @Test
+    void runsManyConcurrentCommandsOnBoundedNumberOfThreads() {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(ProcessRunner.execAndGetStdOut(TIMEOUT, "sh", "-c", "sleep 0.05; echo " + i));
+        }
+
+        long processThreads = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().startsWith("common-custom-user-data-process-") && !thread.getName().contains("timeout"))
+            .count();
+        assertTrue(processThreads <= 4, "process threads: " + processThreads);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(String.valueOf(i), ProcessRunner.getOrNull(results.get(i)));
+        }
+    }
+
+    private static String awaitPid(Path pidFile) throws Exception {
+        for (int i = 0; i < 200; i++) {
+            if (Files.isRegularFile(pidFile)) {
+                String pid = new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim();
+                if (!pid.isEmpty()) {
+                    return pid;
+                }
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("process did not start: " + pidFile);
+    }
+
+    private static void assertProcessIsGone(Path pidFile) throws Exception {
+        Path procEntry = Paths.get("/proc", awaitPid(pidFile));
+        for (int i = 0; i < 200 && Files.exists(procEntry); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.notExists(procEntry), "process still running: " + procEntry);
+    }
+
+}
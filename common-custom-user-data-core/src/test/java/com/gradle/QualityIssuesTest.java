@@ -0,0 +1,70 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QualityIssuesTest {
+
+    @TempDir
+    Path rootDir;
+
+    @Test
+    void summaryCapsRulesLikeFiles() throws IOException {
+        StringBuilder report = new StringBuilder("<checkstyle><file name=\"" + rootDir.resolve("src/A.java") + "\">");
+        for (int rule = 1; rule <= 5; rule++) {
+            for (int issue = 0; issue < rule; issue++) {
+                report.append("<error line=\"1\" column=\"1\" source=\"Rule").append(rule).append("\" message=\"message\"/>");
+            }
+        }
+        report.append("</file></checkstyle>");
+        Path reportFile = Files.write(rootDir.resolve("checkstyle.xml"), report.toString().getBytes(StandardCharsets.UTF_8));
+
+        QualityIssues issues = new QualityIssues(rootDir.toFile(), 2, rootDir.resolve("details.txt.gz").toFile(), null);
+        issues.collect(QualityReportFormat.CHECKSTYLE, reportFile.toFile());
+        List<String> rules = new ArrayList<>();
+        issues.report((name, value) -> {
+            if (name.equals("Verification Checkstyle rule")) {
+                rules.add(value);
+            }
+        });
+        issues.close();
+
+        assertEquals(Arrays.asList("Rule5: 5", "Rule4: 4", "\u2026 3 more rules"), rules);
+    }
+
+    @Test
+    void resolvesCachedSourcePathsAgainstCurrentFiles() throws IOException {
+        Path srcDir = rootDir.resolve("src");
+        String report = "<BugCollection><Project><SrcDir>" + srcDir + "</SrcDir></Project>"
+            + "<BugInstance type=\"Rule\"><ShortMessage>message</ShortMessage><SourceLine start=\"1\" end=\"1\" sourcepath=\"com/A.java\"/></BugInstance>"
+            + "</BugCollection>";
+        Path reportFile = Files.write(rootDir.resolve("spotbugs.xml"), report.getBytes(StandardCharsets.UTF_8));
+        Path cacheDir = rootDir.resolve("cache");
+
+        assertEquals(Arrays.asList("com/A.java:1 \u2192 message"), readIssues(reportFile, cacheDir));
+        Files.createDirectories(srcDir.resolve("com"));
+        Files.createFile(srcDir.resolve("com/A.java"));
+        assertEquals(Arrays.asList("src/com/A.java:1 \u2192 message".replace('/', File.separatorChar)), readIssues(reportFile, cacheDir));
+    }
+
+    private List<String> readIssues(Path reportFile, Path cacheDir) {
+        QualityIssues issues = new QualityIssues(rootDir.toFile(), -1, null, cacheDir.toFile());
+        issues.collect(QualityReportFormat.SPOTBUGS, reportFile.toFile());
+        List<String> values = new ArrayList<>();
+        issues.report((name, value) -> values.add(value));
+        issues.close();
+        return values;
+    }
+
+}
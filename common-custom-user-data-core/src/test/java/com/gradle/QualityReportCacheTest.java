@@ -0,0 +1,136 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QualityReportCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void loadsStoredIssues() throws IOException {
+        QualityReportCache cache = new QualityReportCache(cacheDir);
+        cache.store("key", Arrays.asList(
+            new QualityIssue("src/A.java", "1", null, "Rule", "message"),
+            new QualityIssue("src/B.java", "2", "3", "Other", "other message")
+        ));
+
+        Optional<List<QualityIssue>> issues = cache.load("key");
+
+        assertTrue(issues.isPresent());
+        assertEquals(2, issues.get().size());
+        assertEquals("src/B.java", issues.get().get(1).getFilePath());
+        assertNull(issues.get().get(0).getColumn());
+        // no temporary file is left behind
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void keepsSourcePathsUnresolved() throws IOException {
+        List<String> srcDirs = Arrays.asList("/src/main/java", "/src/test/java");
+        QualityReportCache cache = new QualityReportCache(cacheDir);
+        cache.store("key", Arrays.asList(
+            new QualityIssue("com/A.java", "1", null, "Rule", "message", srcDirs),
+            new QualityIssue("com/B.java", "2", null, "Rule", "message", srcDirs),
+            new QualityIssue("src/C.java", "3", null, "Rule", "message")
+        ));
+
+        List<QualityIssue> issues = new QualityReportCache(cacheDir).load("key").get();
+
+        assertEquals("com/A.java", issues.get(0).getFilePath());
+        assertEquals(srcDirs, issues.get(0).getSourceDirs());
+        assertSame(issues.get(0).getSourceDirs(), issues.get(1).getSourceDirs());
+        assertNull(issues.get(2).getSourceDirs());
+    }
+
+    @Test
+    void ignoresEntryWithCorruptCount() throws IOException {
+        writeEntry(output -> {
+            output.writeInt(2);
+            output.writeInt(0);
+            output.writeInt(Integer.MAX_VALUE);
+        });
+
+        assertFalse(new QualityReportCache(cacheDir).load("key").isPresent());
+    }
+
+    @Test
+    void ignoresEntryWithNegativeCount() throws IOException {
+        writeEntry(output -> {
+            output.writeInt(2);
+            output.writeInt(0);
+            output.writeInt(-2);
+        });
+
+        assertFalse(new QualityReportCache(cacheDir).load("key").isPresent());
+    }
+
+    @Test
+    void ignoresEntryWithCorruptStringLength() throws IOException {
+        writeEntry(output -> {
+            output.writeInt(2);
+            output.writeInt(0);
+            output.writeInt(1);
+            output.writeInt(Integer.MAX_VALUE - 8);
+            for (int i = 0; i < 5; i++) {
+                output.writeInt(-1);
+            }
+        });
+
+        assertFalse(new QualityReportCache(cacheDir).load("key").isPresent());
+    }
+
+    @Test
+    void ignoresEntryWithCorruptSourceDirsIndex() throws IOException {
+        writeEntry(output -> {
+            output.writeInt(2);
+            output.writeInt(0);
+            output.writeInt(1);
+            for (int i = 0; i < 5; i++) {
+                output.writeInt(-1);
+            }
+            output.writeInt(0);
+        });
+
+        assertFalse(new QualityReportCache(cacheDir).load("key").isPresent());
+    }
+
+    @Test
+    void ignoresTruncatedEntry() throws IOException {
+        Files.write(cacheDir.resolve("key.bin"), new byte[]{0x1f});
+
+        assertFalse(new QualityReportCache(cacheDir).load("key").isPresent());
+    }
+
+    private interface EntryWriter {
+
+        void write(DataOutputStream output) throws IOException;
+
+    }
+
+    private void writeEntry(EntryWriter content) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(cacheDir.resolve("key.bin"))))) {
+            content.write(output);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.gradle;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SystemPropertyKeyIndexTest {
+
+    private static final String PREFIX = "ccud.test.idea.version";
+
+    @AfterEach
+    void removeTestProperties() {
+        System.getProperties().stringPropertyNames().stream()
+            .filter(key -> key.startsWith(PREFIX))
+            .forEach(System::clearProperty);
+    }
+
+    @Test
+    void findsSmallestKeyWithPrefix() {
+        System.setProperty(PREFIX + "2021.2", "");
+        System.setProperty(PREFIX + "2021.1", "");
+
+        assertEquals(Optional.of(PREFIX + "2021.1"), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+        assertEquals(Optional.empty(), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX + "2022"));
+    }
+
+    @Test
+    void findsKeyAddedAfterQuery() {
+        assertEquals(Optional.empty(), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+
+        System.setProperty(PREFIX + "2021.1", "");
+        assertEquals(Optional.of(PREFIX + "2021.1"), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+    }
+
+    @Test
+    void findsKeyThatReplacedAnotherOneWithoutChangingTheNumberOfKeys() {
+        System.setProperty(PREFIX + "2021.1", "");
+        assertEquals(Optional.of(PREFIX + "2021.1"), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+
+        System.clearProperty(PREFIX + "2021.1");
+        System.setProperty(PREFIX + "2021.2", "");
+        assertEquals(Optional.of(PREFIX + "2021.2"), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+    }
+
+    @Test
+    void doesNotFindRemovedKey() {
+        System.setProperty(PREFIX + "2021.1", "");
+        assertEquals(Optional.of(PREFIX + "2021.1"), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+
+        System.clearProperty(PREFIX + "2021.1");
+        assertEquals(Optional.empty(), SystemPropertyKeyIndex.firstKeyStartingWith(PREFIX));
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.gradle;
+
+import org.gradle.build.event.BuildEventsListenerRegistry;
+
+import javax.inject.Inject;
+
+/**
+ * Gives access to the registry of build event listeners, which is only available as an injected service on Gradle 6.1
+ * and newer, and thus cannot be injected into the plugin itself.
+ */
+public abstract class BuildEventsListeners {
+
+    @Inject
+    public abstract BuildEventsListenerRegistry getRegistry();
+
+}
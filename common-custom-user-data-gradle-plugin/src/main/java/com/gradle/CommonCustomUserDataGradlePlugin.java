@@ -6,6 +6,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.initialization.Settings;
+import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.caching.configuration.BuildCacheConfiguration;
 import org.gradle.util.GradleVersion;
@@ -15,10 +16,12 @@ import javax.inject.Inject;
 public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
 
     private final ProviderFactory providers;
+    private final ObjectFactory objects;
 
     @Inject
-    public CommonCustomUserDataGradlePlugin(ProviderFactory providers) {
+    public CommonCustomUserDataGradlePlugin(ProviderFactory providers, ObjectFactory objects) {
         this.providers = providers;
+        this.objects = objects;
     }
 
     public void apply(Object target) {
@@ -44,7 +47,7 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
 
             BuildScanExtension buildScan = gradleEnterprise.getBuildScan();
             customGradleEnterpriseConfig.configureBuildScanPublishing(buildScan);
-            new CustomBuildScanEnhancements(buildScan, providers, settings.getGradle()).apply();
+            new CustomBuildScanEnhancements(buildScan, providers, objects, settings.getGradle(), settings.getRootDir()).apply();
 
             BuildCacheConfiguration buildCache = settings.getBuildCache();
             customGradleEnterpriseConfig.configureBuildCache(buildCache);
@@ -71,7 +74,7 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
 
             BuildScanExtension buildScan = gradleEnterprise.getBuildScan();
             customGradleEnterpriseConfig.configureBuildScanPublishing(buildScan);
-            new CustomBuildScanEnhancements(buildScan, providers, project.getGradle()).apply();
+            new CustomBuildScanEnhancements(buildScan, providers, objects, project.getGradle(), project.getRootDir()).apply();
 
             // Build cache configuration cannot be accessed from a project plugin
 
@@ -0,0 +1,98 @@
+package com.gradle;
+
+import com.gradle.scan.plugin.BuildScanExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Records the environment variables, system properties and project properties the plugin reads at configuration time,
+ * i.e. its own configuration cache inputs.
+ * <p>
+ * Only a fingerprint of each value is kept. Once the build has finished, the fingerprints are compared with the ones
+ * stored by the previous configuration of the build, and the names of the inputs whose value changed, that were read for
+ * the first time, or that are no longer read are reported in the build scan. These are the inputs of the plugin that
+ * caused the configuration cache miss.
+ * <p>
+ * Nothing is reported when the configuration was loaded from the configuration cache, since no input was read then.
+ */
+final class ConfigurationInputs {
+
+    private static final String ABSENT = "-";
+
+    private final Map<String, String> fingerprints = new TreeMap<>();
+
+    // not serialized into the configuration cache, so it is only true in the build that read the inputs
+    private transient boolean readInThisBuild = true;
+
+    synchronized void record(String kind, String name, Optional<?> value) {
+        fingerprints.put(kind + ":" + name, value.map(v -> Integer.toHexString(v.toString().hashCode())).orElse(ABSENT));
+    }
+
+    /**
+     * Compares the recorded inputs with the ones stored in the given file, reports the changed ones in the build scan,
+     * and stores the recorded inputs for the next configuration of the build.
+     */
+    synchronized void reportChanges(BuildScanExtension buildScan, File stateFile) {
+        if (!readInThisBuild) {
+            return;
+        }
+
+        Path file = stateFile.toPath();
+        Properties previous = load(file);
+        if (!previous.isEmpty()) {
+            List<String> changed = new ArrayList<>();
+            TreeSet<String> names = new TreeSet<>(fingerprints.keySet());
+            names.addAll(previous.stringPropertyNames());
+            for (String name : names) {
+                String fingerprint = fingerprints.get(name);
+                String previousFingerprint = previous.getProperty(name);
+                if (previousFingerprint == null) {
+                    changed.add(name + " (added)");
+                } else if (fingerprint == null) {
+                    changed.add(name + " (removed)");
+                } else if (!previousFingerprint.equals(fingerprint)) {
+                    changed.add(name);
+                }
+            }
+            if (!changed.isEmpty()) {
+                buildScan.value("Changed configuration inputs", String.join(", ", changed));
+            }
+        }
+        store(file);
+    }
+
+    private static Properties load(Path file) {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+            } catch (IOException | IllegalArgumentException e) {
+                // treat the previous inputs as unknown
+                properties.clear();
+            }
+        }
+        return properties;
+    }
+
+    private void store(Path file) {
+        Properties properties = new Properties();
+        properties.putAll(fingerprints);
+        try {
+            Utils.writeAtomically(file, output -> properties.store(output, null));
+        } catch (IOException ignored) {
+            // the next configuration of the build will not report any changed inputs
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.gradle;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.OperationDescriptor;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskOperationDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Build service that records the start and end time and the dependencies of all tasks of the build, received as task
+ * completion events, and derives the critical path of the task graph once the build has finished.
+ * <p>
+ * The critical path is the chain of dependent tasks with the largest summed duration, which bounds the wall time of the
+ * build no matter how many workers are available. Dividing the summed duration of all tasks by the wall time gives the
+ * achieved parallelism, dividing it by the duration of the critical path the theoretical parallelism.
+ */
+public abstract class CriticalPathAnalyzer implements BuildService<BuildServiceParameters.None>, OperationCompletionListener {
+
+    static final String NAME = "commonCustomUserDataCriticalPathAnalyzer";
+
+    // tasks on the critical path that take less than this share of its duration are not reported individually
+    private static final double MIN_REPORTED_SHARE = 0.01;
+
+    private final List<TaskNode> tasks = new ArrayList<>();
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (!(event instanceof TaskFinishEvent)) {
+            return;
+        }
+
+        TaskOperationDescriptor descriptor = ((TaskFinishEvent) event).getDescriptor();
+        Set<? extends OperationDescriptor> dependencies = descriptor.getDependencies();
+        List<String> dependencyPaths = new ArrayList<>(dependencies.size());
+        for (OperationDescriptor dependency : dependencies) {
+            if (dependency instanceof TaskOperationDescriptor) {
+                dependencyPaths.add(((TaskOperationDescriptor) dependency).getTaskPath());
+            }
+        }
+        TaskNode task = new TaskNode(descriptor.getTaskPath(), event.getResult().getStartTime(), event.getResult().getEndTime(), dependencyPaths);
+        synchronized (tasks) {
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Passes the critical path of the build to the given consumer as custom values.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        List<TaskNode> finishedTasks;
+        synchronized (tasks) {
+            finishedTasks = new ArrayList<>(tasks);
+        }
+        if (finishedTasks.isEmpty()) {
+            return;
+        }
+
+        // a task only finishes after its dependencies, so the tasks are visited in topological order
+        Map<String, TaskNode> tasksByPath = new HashMap<>();
+        long buildStart = Long.MAX_VALUE;
+        long buildEnd = Long.MIN_VALUE;
+        long totalDuration = 0;
+        TaskNode lastOnCriticalPath = null;
+        for (TaskNode task : finishedTasks) {
+            task.longestChainPredecessor = null;
+            for (String dependencyPath : task.dependencyPaths) {
+                TaskNode dependency = tasksByPath.get(dependencyPath);
+                if (dependency != null && (task.longestChainPredecessor == null || dependency.longestChain > task.longestChainPredecessor.longestChain)) {
+                    task.longestChainPredecessor = dependency;
+                }
+            }
+            task.longestChain = task.duration() + (task.longestChainPredecessor != null ? task.longestChainPredecessor.longestChain : 0);
+            if (lastOnCriticalPath == null || task.longestChain > lastOnCriticalPath.longestChain) {
+                lastOnCriticalPath = task;
+            }
+            tasksByPath.put(task.path, task);
+            buildStart = Math.min(buildStart, task.startTime);
+            buildEnd = Math.max(buildEnd, task.endTime);
+            totalDuration += task.duration();
+        }
+
+        Deque<TaskNode> criticalPath = new ArrayDeque<>();
+        for (TaskNode task = lastOnCriticalPath; task != null; task = task.longestChainPredecessor) {
+            criticalPath.addFirst(task);
+        }
+
+        long wallTime = Math.max(1, buildEnd - buildStart);
+        long criticalPathDuration = Math.max(1, lastOnCriticalPath.longestChain);
+        customValues.accept("Critical path", criticalPath.size() + " tasks, " + formatSeconds(lastOnCriticalPath.longestChain)
+            + " (" + percent(lastOnCriticalPath.longestChain, wallTime) + " of wall time " + formatSeconds(wallTime) + ")"
+            + ", achieved parallelism=" + ratio(totalDuration, wallTime)
+            + ", theoretical parallelism=" + ratio(totalDuration, criticalPathDuration));
+        for (TaskNode task : criticalPath) {
+            if (task.duration() >= MIN_REPORTED_SHARE * criticalPathDuration) {
+                customValues.accept("Critical path task", task.path + " (" + formatSeconds(task.duration()) + ", " + percent(task.duration(), wallTime) + " of wall time)");
+            }
+        }
+    }
+
+    private static String percent(long part, long whole) {
+        return Math.round(100.0 * part / whole) + "%";
+    }
+
+    private static String ratio(long dividend, long divisor) {
+        return String.format(Locale.ROOT, "%.1f", (double) dividend / divisor);
+    }
+
+    private static final class TaskNode {
+
+        private final String path;
+        private final long startTime;
+        private final long endTime;
+        private final List<String> dependencyPaths;
+        private long longestChain; // summed duration of the longest chain of dependencies ending with this task
+        private TaskNode longestChainPredecessor;
+
+        private TaskNode(String path, long startTime, long endTime, List<String> dependencyPaths) {
+            this.path = path;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.dependencyPaths = dependencyPaths;
+        }
+
+        long duration() {
+            return endTime - startTime;
+        }
+
+    }
+
+}
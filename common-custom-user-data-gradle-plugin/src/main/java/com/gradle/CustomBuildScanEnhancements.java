@@ -1,38 +1,96 @@
 package com.gradle;
 
+import com.gradle.scan.plugin.BuildResult;
 import com.gradle.scan.plugin.BuildScanExtension;
 import org.gradle.api.Action;
 import org.gradle.api.Task;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.testing.Test;
-
+import org.gradle.api.tasks.testing.TestDescriptor;
+import org.gradle.api.tasks.testing.TestListener;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.util.GradleVersion;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static com.gradle.Utils.appendIfMissing;
-import static com.gradle.Utils.execAndCheckSuccess;
-import static com.gradle.Utils.execAndGetStdOut;
-import static com.gradle.Utils.isNotEmpty;
+
 import static com.gradle.Utils.stripPrefix;
-import static com.gradle.Utils.urlEncode;
 
 /**
  * Adds a standard set of useful tags, links and custom values to all build scans published.
  */
 final class CustomBuildScanEnhancements {
 
+    // system properties to configure the capturing of Git metadata
+    public static final String GIT_PARALLEL = "ccud.git.parallel";
+    public static final String GIT_TIMEOUT = "ccud.git.timeout";
+    public static final String GIT_CACHE = "ccud.git.cache";
+    public static final String GIT_STATUS = "ccud.git.status";
+    public static final String GIT_STATUS_MAX_PATHS = "ccud.git.status.maxPaths";
+    public static final String GIT_MAX_OUTPUT_BYTES = "ccud.git.maxOutputBytes";
+
+    // system properties to configure the profiling of task executions
+    public static final String TASK_PROFILE = "ccud.taskProfile";
+    public static final String TASK_PROFILE_SLOWEST_TASKS = "ccud.taskProfile.slowestTasks";
+    public static final String TASK_PROFILE_THRESHOLDS = "ccud.taskProfile.thresholds";
+    public static final String CRITICAL_PATH = "ccud.criticalPath";
+    public static final String DEPENDENCY_RESOLUTION_PROFILE = "ccud.dependencyResolutionProfile";
+    public static final String DEPENDENCY_RESOLUTION_PROFILE_SLOWEST = "ccud.dependencyResolutionProfile.slowest";
+
+    // system property to configure the detection of changed system properties of test tasks
+    public static final String TEST_SYSTEM_PROPERTY_DRIFT = "ccud.testSystemPropertyDrift";
+    public static final String TEST_EXECUTION_TELEMETRY = "ccud.testExecutionTelemetry";
+
+    // system properties to configure the sampling of the resource usage of the build processes
+    public static final String PROCESS_SAMPLER = "ccud.processSampler";
+    public static final String PROCESS_SAMPLER_INTERVAL = "ccud.processSampler.interval";
+    public static final String GC_MONITOR = "ccud.gcMonitor";
+
+    // system properties to configure the capturing of the issues found by quality check tasks
+    public static final String QUALITY_ISSUES = "ccud.qualityIssues";
+    public static final String QUALITY_ISSUES_SUMMARY = "ccud.qualityIssues.summary";
+    public static final String QUALITY_ISSUES_SUMMARY_MAX_SAMPLES = "ccud.qualityIssues.summary.maxSamples";
+    public static final String QUALITY_ISSUES_CACHE = "ccud.qualityIssues.cache";
+
+    // system property to keep the configuration cache inputs of the plugin to a minimum
+    public static final String CONFIGURATION_CACHE_MINIMAL_INPUTS = "ccud.configurationCache.minimalInputs";
+
+    private static final Duration DEFAULT_GIT_TIMEOUT = Duration.ofSeconds(10);
+    private static final int DEFAULT_TASK_PROFILE_SLOWEST_TASKS = 10;
+    private static final int DEFAULT_DEPENDENCY_RESOLUTION_PROFILE_SLOWEST = 10;
+    private static final Duration DEFAULT_PROCESS_SAMPLER_INTERVAL = Duration.ofSeconds(1);
+    private static final int DEFAULT_QUALITY_ISSUES_SUMMARY_MAX_SAMPLES = 10;
+    private static final String MAX_HEAP_SIZE_HINT = "via -Xmx in the org.gradle.jvmargs property of gradle.properties";
+
     private final BuildScanExtension buildScan;
     private final ProviderFactory providers;
+    private final ObjectFactory objects;
     private final Gradle gradle;
+    private final File rootDir;
+    private final ConfigurationInputs configurationInputs;
+    private final CiEnvironment ciEnvironment;
+    private final List<CiProvider> ciProviders;
+    private final boolean minimalInputs;
 
-    CustomBuildScanEnhancements(BuildScanExtension buildScan, ProviderFactory providers, Gradle gradle) {
+    CustomBuildScanEnhancements(BuildScanExtension buildScan, ProviderFactory providers, ObjectFactory objects, Gradle gradle, File rootDir) {
         this.buildScan = buildScan;
         this.providers = providers;
+        this.objects = objects;
         this.gradle = gradle;
+        this.rootDir = rootDir;
+        this.configurationInputs = new ConfigurationInputs();
+        this.ciEnvironment = new GradleCiEnvironment(providers, gradle, configurationInputs);
+        this.ciProviders = CiProviderRegistry.detect(ciEnvironment);
+        this.minimalInputs = recorded(CONFIGURATION_CACHE_MINIMAL_INPUTS, GradleUtils.booleanSysProperty(CONFIGURATION_CACHE_MINIMAL_INPUTS, providers)).orElse(false);
     }
 
     void apply() {
@@ -42,6 +100,16 @@ final class CustomBuildScanEnhancements {
         captureCiMetadata();
         captureGitMetadata();
         captureTestParallelization();
+        captureTestSystemPropertyDrift();
+        captureTaskExecutionProfile();
+        captureCriticalPath();
+        captureDependencyResolutionProfile();
+        captureProcessResources();
+        captureGarbageCollection();
+        captureQualityIssues();
+        if (minimalInputs) {
+            reportChangedConfigurationInputs();
+        }
     }
 
     private void captureOs() {
@@ -82,291 +150,492 @@ final class CustomBuildScanEnhancements {
     }
 
     private void captureCiMetadata() {
-        if (isJenkins() || isHudson()) {
-            envVariable("BUILD_URL").ifPresent(url ->
-                buildScan.link(isJenkins() ? "Jenkins build" : "Hudson build", url));
-            envVariable("BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("NODE_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI node", value));
-            envVariable("JOB_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("STAGE_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI stage", value));
-        }
-
-        if (isTeamCity()) {
-            // Wait for projects to load to ensure Gradle project properties are initialized
-            gradle.projectsEvaluated(g -> {
-                Optional<String> teamCityConfigFile = projectProperty("teamcity.configuration.properties.file");
-                Optional<String> buildNumber = projectProperty("build.number");
-                Optional<String> buildTypeId = projectProperty("teamcity.buildType.id");
-                if (teamCityConfigFile.isPresent()
-                    && buildNumber.isPresent()
-                    && buildTypeId.isPresent()) {
-                    Properties properties = readPropertiesFile(teamCityConfigFile.get());
-                    String teamCityServerUrl = properties.getProperty("teamcity.serverUrl");
-                    if (teamCityServerUrl != null) {
-                        String buildUrl = appendIfMissing(teamCityServerUrl, "/") + "viewLog.html?buildNumber=" + urlEncode(buildNumber.get()) + "&buildTypeId=" + urlEncode(buildTypeId.get());
-                        buildScan.link("TeamCity build", buildUrl);
-                    }
-                }
-                buildNumber.ifPresent(value ->
-                    buildScan.value("CI build number", value));
-                buildTypeId.ifPresent(value ->
-                    addCustomValueAndSearchLink("CI build config", value));
-                projectProperty("agent.name").ifPresent(value ->
-                    addCustomValueAndSearchLink("CI agent", value));
-            });
-        }
-
-        if (isCircleCI()) {
-            envVariable("CIRCLE_BUILD_URL").ifPresent(url ->
-                buildScan.link("CircleCI build", url));
-            envVariable("CIRCLE_BUILD_NUM").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("CIRCLE_JOB").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("CIRCLE_WORKFLOW_ID").ifPresent(value ->
-                addCustomValueAndSearchLink("CI workflow", value));
-        }
-
-        if (isBamboo()) {
-            envVariable("bamboo_resultsUrl").ifPresent(url ->
-                buildScan.link("Bamboo build", url));
-            envVariable("bamboo_buildNumber").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("bamboo_planName").ifPresent(value ->
-                addCustomValueAndSearchLink("CI plan", value));
-            envVariable("bamboo_buildPlanName").ifPresent(value ->
-                addCustomValueAndSearchLink("CI build plan", value));
-            envVariable("bamboo_agentId").ifPresent(value ->
-                addCustomValueAndSearchLink("CI agent", value));
-        }
-
-        if (isGitHubActions()) {
-            Optional<String> gitHubRepository = envVariable("GITHUB_REPOSITORY");
-            Optional<String> gitHubRunId = envVariable("GITHUB_RUN_ID");
-            if (gitHubRepository.isPresent() && gitHubRunId.isPresent()) {
-                buildScan.link("GitHub Actions build", "https://github.com/" + gitHubRepository.get() + "/actions/runs/" + gitHubRunId.get());
+        BuildScanAdapter buildScanAdapter = new GradleBuildScanAdapter(buildScan);
+        List<CiProvider> deferredProviders = new ArrayList<>();
+        ciProviders.forEach(provider -> {
+            if (minimalInputs && provider.supportsDeferredCapture()) {
+                deferredProviders.add(provider);
+            } else {
+                provider.captureMetadata(ciEnvironment, buildScanAdapter);
             }
-            envVariable("GITHUB_WORKFLOW").ifPresent(value ->
-                addCustomValueAndSearchLink("GitHub workflow", value));
+        });
+        if (!deferredProviders.isEmpty()) {
+            // per-build values like build numbers are read once the build has finished, so they do not become configuration cache inputs
+            buildScan.buildFinished(new CaptureDeferredCiMetadataAction(buildScan, deferredProviders));
         }
+    }
 
-        if (isGitLab()) {
-            envVariable("CI_JOB_URL").ifPresent(url ->
-                buildScan.link("GitLab build", url));
-            envVariable("CI_PIPELINE_URL").ifPresent(url ->
-                buildScan.link("GitLab pipeline", url));
-            envVariable("CI_JOB_NAME").ifPresent(value1 ->
-                addCustomValueAndSearchLink("CI job", value1));
-            envVariable("CI_JOB_STAGE").ifPresent(value ->
-                addCustomValueAndSearchLink("CI stage", value));
-        }
+    private boolean isCi() {
+        return !ciProviders.isEmpty();
+    }
+
+    private void captureGitMetadata() {
+        boolean parallel = recorded(GIT_PARALLEL, GradleUtils.booleanSysProperty(GIT_PARALLEL, providers)).orElse(false);
+        Duration timeout = recorded(GIT_TIMEOUT, GradleUtils.durationSysProperty(GIT_TIMEOUT, providers)).orElse(DEFAULT_GIT_TIMEOUT);
+        File cacheFile = recorded(GIT_CACHE, GradleUtils.booleanSysProperty(GIT_CACHE, providers)).orElse(false) ? new File(projectCacheDir(), "common-custom-user-data/git-metadata.properties") : null;
+        // a negative number of paths denotes the full git status output
+        int statusMaxPaths = sysProperty(GIT_STATUS).orElse("full").equals("summary") ? recorded(GIT_STATUS_MAX_PATHS, GradleUtils.integerSysProperty(GIT_STATUS_MAX_PATHS, providers)).orElse(0) : -1;
+        int maxOutputBytes = recorded(GIT_MAX_OUTPUT_BYTES, GradleUtils.integerSysProperty(GIT_MAX_OUTPUT_BYTES, providers)).orElse(0);
+        String ciBranchName = ciProviders.stream()
+            .map(provider -> provider.getBranchName(ciEnvironment))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .findFirst()
+            .orElse(null);
+        new GradleBuildScanAdapter(buildScan).background(new GitMetadataCapture(parallel, timeout, cacheFile, statusMaxPaths, maxOutputBytes, ciBranchName));
+    }
 
-        if (isTravis()) {
-            envVariable("TRAVIS_BUILD_WEB_URL").ifPresent(url ->
-                buildScan.link("Travis build", url));
-            envVariable("TRAVIS_BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("TRAVIS_JOB_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("TRAVIS_EVENT_TYPE").ifPresent(buildScan::tag);
+    private File projectCacheDir() {
+        File projectCacheDir = gradle.getStartParameter().getProjectCacheDir();
+        return projectCacheDir != null ? projectCacheDir : new File(rootDir, ".gradle");
+    }
+
+    private void captureTestParallelization() {
+        if (isGradle61OrNewer()) {
+            captureTestExecutionTelemetry();
+        } else {
+            gradle.allprojects(p ->
+                p.getTasks().withType(Test.class).configureEach(captureMaxParallelForks(buildScan))
+            );
         }
+    }
 
-        if (isBitrise()) {
-            envVariable("BITRISE_BUILD_URL").ifPresent(url ->
-                buildScan.link("Bitrise build", url));
-            envVariable("BITRISE_BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
+    private void captureTestExecutionTelemetry() {
+        Provider<TestExecutionTelemetry> telemetry = gradle.getSharedServices().registerIfAbsent(TestExecutionTelemetry.NAME, TestExecutionTelemetry.class, spec -> {
+            // only the scheduled test tasks are recorded, once their configuration is complete
+            gradle.getTaskGraph().whenReady(graph -> graph.getAllTasks().stream()
+                .filter(task -> task instanceof Test)
+                .forEach(task -> spec.getParameters().getMaxParallelForks().put(((Test) task).getIdentityPath().toString(), ((Test) task).getMaxParallelForks()))
+            );
+        });
+        objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(telemetry);
+        if (recorded(TEST_EXECUTION_TELEMETRY, GradleUtils.booleanSysProperty(TEST_EXECUTION_TELEMETRY, providers)).orElse(false)) {
+            gradle.allprojects(p ->
+                p.getTasks().withType(Test.class).configureEach(test -> {
+                    test.usesService(telemetry);
+                    test.addTestListener(new TestClassListener(test.getIdentityPath().toString(), telemetry));
+                })
+            );
         }
+        buildScan.buildFinished(new CaptureTestExecutionTelemetryAction(buildScan, telemetry));
     }
 
-    private boolean isCi() {
-        return isGenericCI() || isJenkins() || isHudson() || isTeamCity() || isCircleCI() || isBamboo() || isGitHubActions() || isGitLab() || isTravis() || isBitrise();
+    private void captureTestSystemPropertyDrift() {
+        if (!isGradle61OrNewer() || !recorded(TEST_SYSTEM_PROPERTY_DRIFT, GradleUtils.booleanSysProperty(TEST_SYSTEM_PROPERTY_DRIFT, providers)).orElse(false)) {
+            return;
+        }
+
+        File stateFile = new File(projectCacheDir(), "common-custom-user-data/test-system-properties.properties");
+        Provider<TestSystemPropertyDrift> drift = gradle.getSharedServices().registerIfAbsent(TestSystemPropertyDrift.NAME, TestSystemPropertyDrift.class, spec ->
+            spec.getParameters().getStateFile().set(stateFile)
+        );
+        gradle.allprojects(p ->
+            p.getTasks().withType(Test.class).configureEach(test -> {
+                test.usesService(drift);
+                test.doFirst(recordSystemProperties(drift));
+            })
+        );
+        buildScan.buildFinished(new CaptureTestSystemPropertyDriftAction(buildScan, drift));
     }
 
-    private boolean isGenericCI() {
-        return envVariable("CI").isPresent() || sysProperty("CI").isPresent();
+    private void captureTaskExecutionProfile() {
+        if (!isGradle61OrNewer() || !recorded(TASK_PROFILE, GradleUtils.booleanSysProperty(TASK_PROFILE, providers)).orElse(false)) {
+            return;
+        }
+
+        // a negative number of slowest tasks captures none of them, like zero
+        int slowestTasks = Math.max(0, recorded(TASK_PROFILE_SLOWEST_TASKS, GradleUtils.integerSysProperty(TASK_PROFILE_SLOWEST_TASKS, providers)).orElse(DEFAULT_TASK_PROFILE_SLOWEST_TASKS));
+        Map<String, Long> thresholds = parseThresholds(sysProperty(TASK_PROFILE_THRESHOLDS).orElse(""));
+        Provider<TaskExecutionProfiler> profiler = gradle.getSharedServices().registerIfAbsent(TaskExecutionProfiler.NAME, TaskExecutionProfiler.class, spec -> {
+            TaskExecutionProfiler.Parameters parameters = spec.getParameters();
+            parameters.getSlowestTasks().set(slowestTasks);
+            parameters.getThresholds().set(thresholds);
+            // only the types of the scheduled tasks are recorded, which are all created once the task graph is ready
+            gradle.getTaskGraph().whenReady(graph ->
+                graph.getAllTasks().forEach(task -> parameters.getTaskTypes().put(task.getPath(), taskTypeName(task)))
+            );
+        });
+        objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(profiler);
+        buildScan.buildFinished(new CaptureTaskExecutionProfileAction(buildScan, profiler));
     }
 
-    private boolean isJenkins() {
-        return envVariable("JENKINS_URL").isPresent();
+    private void captureCriticalPath() {
+        if (!isGradle61OrNewer() || !recorded(CRITICAL_PATH, GradleUtils.booleanSysProperty(CRITICAL_PATH, providers)).orElse(false)) {
+            return;
+        }
+
+        Provider<CriticalPathAnalyzer> analyzer = gradle.getSharedServices().registerIfAbsent(CriticalPathAnalyzer.NAME, CriticalPathAnalyzer.class, spec -> {
+        });
+        objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(analyzer);
+        buildScan.buildFinished(new CaptureCriticalPathAction(buildScan, analyzer));
     }
 
-    private boolean isHudson() {
-        return envVariable("HUDSON_URL").isPresent();
+    private void captureDependencyResolutionProfile() {
+        if (!recorded(DEPENDENCY_RESOLUTION_PROFILE, GradleUtils.booleanSysProperty(DEPENDENCY_RESOLUTION_PROFILE, providers)).orElse(false)) {
+            return;
+        }
+
+        // a negative number of slowest configurations captures none of them, like zero
+        int slowest = Math.max(0, recorded(DEPENDENCY_RESOLUTION_PROFILE_SLOWEST, GradleUtils.integerSysProperty(DEPENDENCY_RESOLUTION_PROFILE_SLOWEST, providers)).orElse(DEFAULT_DEPENDENCY_RESOLUTION_PROFILE_SLOWEST));
+        DependencyResolutionProfiler profiler = new DependencyResolutionProfiler(slowest);
+        gradle.addListener(profiler);
+        gradle.projectsEvaluated(g -> profiler.projectsEvaluated());
+        // reported once the build is configured, so nothing is reported when the configuration is loaded from the configuration cache
+        gradle.getTaskGraph().whenReady(graph -> {
+            gradle.removeListener(profiler);
+            profiler.report(buildScan::value);
+        });
     }
 
-    private boolean isTeamCity() {
-        return envVariable("TEAMCITY_VERSION").isPresent();
+    private void captureProcessResources() {
+        if (!recorded(PROCESS_SAMPLER, GradleUtils.booleanSysProperty(PROCESS_SAMPLER, providers)).orElse(false) || !ProcessResourceSampler.isSupported()) {
+            return;
+        }
+
+        Duration interval = recorded(PROCESS_SAMPLER_INTERVAL, GradleUtils.durationSysProperty(PROCESS_SAMPLER_INTERVAL, providers)).orElse(DEFAULT_PROCESS_SAMPLER_INTERVAL);
+        if (isGradle61OrNewer()) {
+            Provider<ProcessResourceMonitor> monitor = gradle.getSharedServices().registerIfAbsent(ProcessResourceMonitor.NAME, ProcessResourceMonitor.class, spec ->
+                spec.getParameters().getInterval().set(interval)
+            );
+            objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(monitor);
+            // start sampling during configuration already, unless the configuration is loaded from the configuration cache
+            monitor.get();
+            buildScan.buildFinished(new CaptureProcessResourcesAction(buildScan, monitor));
+        } else {
+            ProcessResourceSampler sampler = new ProcessResourceSampler(interval);
+            sampler.start();
+            buildScan.buildFinished(result -> sampler.report(buildScan::value));
+        }
     }
 
-    private boolean isCircleCI() {
-        return envVariable("CIRCLE_BUILD_URL").isPresent();
+    private void captureGarbageCollection() {
+        if (!recorded(GC_MONITOR, GradleUtils.booleanSysProperty(GC_MONITOR, providers)).orElse(false)) {
+            return;
+        }
+
+        if (isGradle61OrNewer()) {
+            Provider<GarbageCollectionMonitorService> monitor = gradle.getSharedServices().registerIfAbsent(GarbageCollectionMonitorService.NAME, GarbageCollectionMonitorService.class, spec -> {
+            });
+            objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(monitor);
+            // start monitoring during configuration already, unless the configuration is loaded from the configuration cache
+            monitor.get();
+            buildScan.buildFinished(new CaptureGarbageCollectionAction(buildScan, monitor));
+        } else {
+            GarbageCollectionMonitor monitor = new GarbageCollectionMonitor();
+            monitor.start();
+            buildScan.buildFinished(result -> monitor.report(MAX_HEAP_SIZE_HINT, buildScan::value));
+        }
     }
 
-    private boolean isBamboo() {
-        return envVariable("bamboo_resultsUrl").isPresent();
+    private void captureQualityIssues() {
+        if (!recorded(QUALITY_ISSUES, GradleUtils.booleanSysProperty(QUALITY_ISSUES, providers)).orElse(false)) {
+            return;
+        }
+
+        // a negative number of samples denotes one custom value per issue
+        int summaryMaxSamples = recorded(QUALITY_ISSUES_SUMMARY, GradleUtils.booleanSysProperty(QUALITY_ISSUES_SUMMARY, providers)).orElse(false)
+            ? recorded(QUALITY_ISSUES_SUMMARY_MAX_SAMPLES, GradleUtils.integerSysProperty(QUALITY_ISSUES_SUMMARY_MAX_SAMPLES, providers)).orElse(DEFAULT_QUALITY_ISSUES_SUMMARY_MAX_SAMPLES)
+            : -1;
+        File detailsFile = new File(rootDir, "build/common-custom-user-data/quality-issues.txt.gz");
+        File cacheDir = recorded(QUALITY_ISSUES_CACHE, GradleUtils.booleanSysProperty(QUALITY_ISSUES_CACHE, providers)).orElse(false) ? new File(projectCacheDir(), "common-custom-user-data/quality-reports") : null;
+        gradle.allprojects(p ->
+            p.getTasks().configureEach(task -> QualityCheckReports.formatOf(task).ifPresent(format -> QualityCheckReports.enableXmlReport(task)))
+        );
+        if (isGradle61OrNewer()) {
+            Provider<QualityIssueCollector> collector = gradle.getSharedServices().registerIfAbsent(QualityIssueCollector.NAME, QualityIssueCollector.class, spec -> {
+                QualityIssueCollector.Parameters parameters = spec.getParameters();
+                parameters.getRootDir().set(rootDir);
+                parameters.getSummaryMaxSamples().set(summaryMaxSamples);
+                parameters.getDetailsFile().set(detailsFile);
+                if (cacheDir != null) {
+                    parameters.getCacheDir().set(cacheDir);
+                }
+                // the report locations are only known once the tasks are configured, and are added until the service is first used
+                gradle.allprojects(p ->
+                    p.getTasks().configureEach(task -> QualityCheckReports.formatOf(task).ifPresent(format -> {
+                        parameters.getReportFormats().put(task.getPath(), format.name());
+                        parameters.getReportFiles().putAll(providers.provider(() -> {
+                            File reportFile = QualityCheckReports.xmlReportFile(task);
+                            return reportFile != null ? Collections.singletonMap(task.getPath(), reportFile) : Collections.emptyMap();
+                        }));
+                    }))
+                );
+            });
+            objects.newInstance(BuildEventsListeners.class).getRegistry().onTaskCompletion(collector);
+            buildScan.buildFinished(new CaptureQualityIssuesAction(buildScan, collector));
+        } else {
+            QualityIssues issues = new QualityIssues(rootDir, summaryMaxSamples, detailsFile, cacheDir);
+            gradle.getTaskGraph().afterTask(task -> QualityCheckReports.formatOf(task).ifPresent(format -> {
+                File reportFile = QualityCheckReports.xmlReportFile(task);
+                if (reportFile != null) {
+                    issues.collect(format, reportFile);
+                }
+            }));
+            buildScan.buildFinished(result -> {
+                issues.report(buildScan::value);
+                issues.close();
+            });
+        }
     }
 
-    private boolean isGitHubActions() {
-        return envVariable("GITHUB_ACTIONS").isPresent();
+    private static Map<String, Long> parseThresholds(String thresholds) {
+        // e.g. JavaCompile=PT15M,Test=PT30M,*=PT1H
+        Map<String, Long> parsed = new HashMap<>();
+        for (String threshold : thresholds.split(",")) {
+            int separator = threshold.indexOf('=');
+            if (separator > 0) {
+                parsed.put(threshold.substring(0, separator).trim(), Duration.parse(threshold.substring(separator + 1).trim()).toMillis());
+            }
+        }
+        return parsed;
     }
 
-    private boolean isGitLab() {
-        return envVariable("GITLAB_CI").isPresent();
+    private static String taskTypeName(Task task) {
+        // tasks are instances of generated subclasses of their declared type
+        String name = task.getClass().getSimpleName();
+        return name.endsWith("_Decorated") ? name.substring(0, name.length() - "_Decorated".length()) : name;
     }
 
-    private boolean isTravis() {
-        return envVariable("TRAVIS_JOB_ID").isPresent();
+    private static Action<Test> captureMaxParallelForks(BuildScanExtension buildScan) {
+        return test -> {
+            test.doFirst(new Action<Task>() {
+                // use anonymous inner class to keep Test task instance cacheable
+                // additionally, using lambdas as task actions is deprecated
+                @Override
+                public void execute(Task task) {
+                    buildScan.value(test.getIdentityPath() + "#maxParallelForks", String.valueOf(test.getMaxParallelForks()));
+                }
+            });
+        };
     }
 
-    private boolean isBitrise() {
-        return envVariable("BITRISE_BUILD_URL").isPresent();
+    private static Action<Task> recordSystemProperties(Provider<TestSystemPropertyDrift> drift) {
+        return new Action<Task>() {
+            // use anonymous inner class to keep Test task instance cacheable
+            @Override
+            public void execute(Task task) {
+                Test test = (Test) task;
+                drift.get().record(test.getIdentityPath().toString(), test.getSystemProperties());
+            }
+        };
     }
 
-    private void captureGitMetadata() {
-        buildScan.background(new CaptureGitMetadataAction(providers));
+    private static boolean isGradle61OrNewer() {
+        return GradleVersion.current().compareTo(GradleVersion.version("6.1")) >= 0;
     }
 
-    private static final class CaptureGitMetadataAction implements Action<BuildScanExtension> {
+    private static final class TestClassListener implements TestListener {
 
-        private final ProviderFactory providers;
+        private final String taskPath;
+        private final Provider<TestExecutionTelemetry> telemetry;
 
-        private CaptureGitMetadataAction(ProviderFactory providers) {
-            this.providers = providers;
+        private TestClassListener(String taskPath, Provider<TestExecutionTelemetry> telemetry) {
+            this.taskPath = taskPath;
+            this.telemetry = telemetry;
         }
 
         @Override
-        public void execute(BuildScanExtension buildScan) {
-            if (!isGitInstalled()) {
-                return;
+        public void beforeSuite(TestDescriptor suite) {
+        }
+
+        @Override
+        public void afterSuite(TestDescriptor suite, TestResult result) {
+            // test classes are the children of the suite of a test worker, which is a child of the root suite
+            TestDescriptor worker = suite.getParent();
+            if (suite.getClassName() != null && worker != null && worker.getParent() != null && worker.getParent().getParent() == null) {
+                telemetry.get().testClassFinished(taskPath, suite, result);
             }
+        }
 
-            String gitRepo = execAndGetStdOut("git", "config", "--get", "remote.origin.url");
-            String gitCommitId = execAndGetStdOut("git", "rev-parse", "--verify", "HEAD");
-            String gitCommitShortId = execAndGetStdOut("git", "rev-parse", "--short=8", "--verify", "HEAD");
-            String gitBranchName = getGitBranchName(() -> execAndGetStdOut("git", "rev-parse", "--abbrev-ref", "HEAD"));
-            String gitStatus = execAndGetStdOut("git", "status", "--porcelain");
+        @Override
+        public void beforeTest(TestDescriptor testDescriptor) {
+        }
 
-            if (isNotEmpty(gitRepo)) {
-                buildScan.value("Git repository", gitRepo);
-            }
-            if (isNotEmpty(gitCommitId)) {
-                buildScan.value("Git commit id", gitCommitId);
-            }
-            if (isNotEmpty(gitCommitShortId)) {
-                addCustomValueAndSearchLink(buildScan, "Git commit id", "Git commit id short", gitCommitShortId);
-            }
-            if (isNotEmpty(gitBranchName)) {
-                buildScan.tag(gitBranchName);
-                buildScan.value("Git branch", gitBranchName);
-            }
-            if (isNotEmpty(gitStatus)) {
-                buildScan.tag("Dirty");
-                buildScan.value("Git status", gitStatus);
-            }
+        @Override
+        public void afterTest(TestDescriptor testDescriptor, TestResult result) {
+        }
 
-            if (isNotEmpty(gitRepo) && isNotEmpty(gitCommitId)) {
-                if (gitRepo.contains("github.com/") || gitRepo.contains("github.com:")) {
-                    Matcher matcher = Pattern.compile("(.*)github\\.com[/|:](.*)").matcher(gitRepo);
-                    if (matcher.matches()) {
-                        String rawRepoPath = matcher.group(2);
-                        String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
-                        buildScan.link("Github source", "https://github.com/" + repoPath + "/tree/" + gitCommitId);
-                    }
-                } else if (gitRepo.contains("gitlab.com/") || gitRepo.contains("gitlab.com:")) {
-                    Matcher matcher = Pattern.compile("(.*)gitlab\\.com[/|:](.*)").matcher(gitRepo);
-                    if (matcher.matches()) {
-                        String rawRepoPath = matcher.group(2);
-                        String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
-                        buildScan.link("GitLab Source", "https://gitlab.com/" + repoPath + "/-/commit/" + gitCommitId);
-                    }
-                }
-            }
+    }
+
+    private static final class CaptureTestSystemPropertyDriftAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<TestSystemPropertyDrift> drift;
+
+        private CaptureTestSystemPropertyDriftAction(BuildScanExtension buildScan, Provider<TestSystemPropertyDrift> drift) {
+            this.buildScan = buildScan;
+            this.drift = drift;
         }
 
-        private boolean isGitInstalled() {
-            return execAndCheckSuccess("git", "--version");
+        @Override
+        public void execute(BuildResult result) {
+            drift.get().report(buildScan::value);
         }
 
-        private String getGitBranchName(Supplier<String> gitCommand) {
-            if (isJenkins() || isHudson()) {
-                Optional<String> branch = Utils.envVariable("BRANCH_NAME", providers);
-                if (branch.isPresent()) {
-                    return branch.get();
-                }
-            }
-            return gitCommand.get();
+    }
+
+    private static final class CaptureTaskExecutionProfileAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<TaskExecutionProfiler> profiler;
+
+        private CaptureTaskExecutionProfileAction(BuildScanExtension buildScan, Provider<TaskExecutionProfiler> profiler) {
+            this.buildScan = buildScan;
+            this.profiler = profiler;
         }
 
-        private boolean isJenkins() {
-            return Utils.envVariable("JENKINS_URL", providers).isPresent();
+        @Override
+        public void execute(BuildResult result) {
+            profiler.get().report(buildScan::value);
         }
 
-        private boolean isHudson() {
-            return Utils.envVariable("HUDSON_URL", providers).isPresent();
+    }
+
+    private static final class CaptureCriticalPathAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<CriticalPathAnalyzer> analyzer;
+
+        private CaptureCriticalPathAction(BuildScanExtension buildScan, Provider<CriticalPathAnalyzer> analyzer) {
+            this.buildScan = buildScan;
+            this.analyzer = analyzer;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            analyzer.get().report(buildScan::value);
         }
 
     }
 
-    private void addCustomValueAndSearchLink(String name, String value) {
-        addCustomValueAndSearchLink(name, name, value);
+    private static final class CaptureProcessResourcesAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<ProcessResourceMonitor> monitor;
+
+        private CaptureProcessResourcesAction(BuildScanExtension buildScan, Provider<ProcessResourceMonitor> monitor) {
+            this.buildScan = buildScan;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            monitor.get().getSampler().report(buildScan::value);
+        }
+
     }
 
-    private void addCustomValueAndSearchLink(String linkLabel, String name, String value) {
-        addCustomValueAndSearchLink(buildScan, linkLabel, name, value);
+    private static final class CaptureGarbageCollectionAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<GarbageCollectionMonitorService> monitor;
+
+        private CaptureGarbageCollectionAction(BuildScanExtension buildScan, Provider<GarbageCollectionMonitorService> monitor) {
+            this.buildScan = buildScan;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            monitor.get().getMonitor().report(MAX_HEAP_SIZE_HINT, buildScan::value);
+        }
+
+    }
+
+    private static final class CaptureQualityIssuesAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<QualityIssueCollector> collector;
+
+        private CaptureQualityIssuesAction(BuildScanExtension buildScan, Provider<QualityIssueCollector> collector) {
+            this.buildScan = buildScan;
+            this.collector = collector;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            collector.get().report(buildScan::value);
+        }
+
     }
 
-    private static void addCustomValueAndSearchLink(BuildScanExtension buildScan, String linkLabel, String name, String value) {
-        buildScan.value(name, value);
-        String server = buildScan.getServer();
-        if (server != null) {
-            String searchParams = "search.names=" + urlEncode(name) + "&search.values=" + urlEncode(value);
-            String url = appendIfMissing(server, "/") + "scans?" + searchParams + "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
-            buildScan.link(linkLabel + " build scans", url);
+    private static final class CaptureTestExecutionTelemetryAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final Provider<TestExecutionTelemetry> telemetry;
+
+        private CaptureTestExecutionTelemetryAction(BuildScanExtension buildScan, Provider<TestExecutionTelemetry> telemetry) {
+            this.buildScan = buildScan;
+            this.telemetry = telemetry;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            telemetry.get().getMaxParallelForks().forEach((taskPath, maxParallelForks) -> buildScan.value(taskPath + "#maxParallelForks", String.valueOf(maxParallelForks)));
+            telemetry.get().getSummaries().forEach((taskPath, summary) -> buildScan.value(taskPath + "#testExecution", summary));
         }
+
     }
 
-    private void captureTestParallelization() {
-        gradle.allprojects(p ->
-            p.getTasks().withType(Test.class).configureEach(captureMaxParallelForks(buildScan))
-        );
+    private void reportChangedConfigurationInputs() {
+        // reported once the build has finished, so the inputs read while calculating the task graph are recorded as well
+        File stateFile = new File(projectCacheDir(), "common-custom-user-data/configuration-inputs.properties");
+        buildScan.buildFinished(new ReportChangedConfigurationInputsAction(buildScan, configurationInputs, stateFile));
     }
 
-    private static Action<Test> captureMaxParallelForks(BuildScanExtension buildScan) {
-        return test -> {
-            test.doFirst(new Action<Task>() {
-                // use anonymous inner class to keep Test task instance cacheable
-                // additionally, using lambdas as task actions is deprecated
-                @Override
-                public void execute(Task task) {
-                    buildScan.value(test.getIdentityPath() + "#maxParallelForks", String.valueOf(test.getMaxParallelForks()));
-                }
-            });
-        };
+    private static final class ReportChangedConfigurationInputsAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final ConfigurationInputs configurationInputs;
+        private final File stateFile;
+
+        private ReportChangedConfigurationInputsAction(BuildScanExtension buildScan, ConfigurationInputs configurationInputs, File stateFile) {
+            this.buildScan = buildScan;
+            this.configurationInputs = configurationInputs;
+            this.stateFile = stateFile;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            configurationInputs.reportChanges(buildScan, stateFile);
+        }
+
     }
 
-    private Optional<String> envVariable(String name) {
-        return Utils.envVariable(name, providers);
+    private static final class CaptureDeferredCiMetadataAction implements Action<BuildResult> {
+
+        private final BuildScanExtension buildScan;
+        private final List<CiProvider> ciProviders;
+
+        private CaptureDeferredCiMetadataAction(BuildScanExtension buildScan, List<CiProvider> ciProviders) {
+            this.buildScan = buildScan;
+            this.ciProviders = ciProviders;
+        }
+
+        @Override
+        public void execute(BuildResult result) {
+            CiEnvironment environment = new SystemCiEnvironment();
+            BuildScanAdapter buildScanAdapter = new GradleBuildScanAdapter(buildScan);
+            ciProviders.forEach(provider -> provider.captureMetadata(environment, buildScanAdapter));
+        }
+
     }
 
     private Optional<String> projectProperty(String name) {
-        return Utils.projectProperty(name, providers, gradle);
+        return ciEnvironment.projectProperty(name);
     }
 
     private Optional<String> sysProperty(String name) {
-        return Utils.sysProperty(name, providers);
+        return ciEnvironment.sysProperty(name);
     }
 
     private Optional<String> firstSysPropertyKeyStartingWith(String keyPrefix) {
-        return Utils.firstSysPropertyKeyStartingWith(keyPrefix, providers);
+        return recorded(keyPrefix + "*", GradleUtils.firstSysPropertyKeyStartingWith(keyPrefix, providers));
     }
 
-    private Properties readPropertiesFile(String fileName) {
-        return Utils.readPropertiesFile(fileName, providers, gradle);
+    private <T> Optional<T> recorded(String sysPropertyName, Optional<T> value) {
+        configurationInputs.record("sys", sysPropertyName, value);
+        return value;
     }
 
 }
@@ -0,0 +1,176 @@
+package com.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.ProjectEvaluationListener;
+import org.gradle.api.ProjectState;
+import org.gradle.api.artifacts.DependencyResolutionListener;
+import org.gradle.api.artifacts.ResolvableDependencies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Records the configurations that are resolved while the build is configured, i.e. while the projects are evaluated or
+ * while the task graph is calculated, together with when their resolution started, how long it took, and which plugin
+ * or build script triggered it while evaluating which project.
+ * <p>
+ * The trigger is the first caller on the stack of the resolving thread that is neither part of Gradle, this plugin or the
+ * Gradle Enterprise plugin, nor of the JDK or the languages of the build scripts. The stack is only captured once per
+ * resolved configuration.
+ * <p>
+ * The total resolution time is reported per phase, but only the slowest configurations are reported individually, so
+ * that builds resolving many configurations do not bloat the build scan.
+ */
+final class DependencyResolutionProfiler implements DependencyResolutionListener, ProjectEvaluationListener {
+
+    private static final List<String> INFRASTRUCTURE_PACKAGES = Arrays.asList(
+        "org.gradle.", "worker.org.gradle.", "com.gradle.scan.", "com.gradle.enterprise.", "com.gradle.develocity.",
+        "java.", "javax.", "jdk.", "sun.", "com.sun.", "groovy.", "org.codehaus.groovy.", "kotlin.", "org.jetbrains.kotlin."
+    );
+    // the package of this plugin, other plugins in subpackages of com.gradle are reported as triggers
+    private static final String PLUGIN_PACKAGE = "com.gradle";
+
+    private final int slowest;
+    private final long startTime = System.currentTimeMillis();
+    private final ThreadLocal<String> evaluatedProject = new ThreadLocal<>();
+    private final Map<ResolvableDependencies, Resolution> ongoingResolutions = new IdentityHashMap<>();
+    private final List<Resolution> resolutions = new ArrayList<>();
+    private volatile String phase = "configuration";
+
+    DependencyResolutionProfiler(int slowest) {
+        this.slowest = slowest;
+    }
+
+    @Override
+    public void beforeEvaluate(Project project) {
+        evaluatedProject.set(project.getPath());
+    }
+
+    @Override
+    public void afterEvaluate(Project project, ProjectState state) {
+        evaluatedProject.remove();
+    }
+
+    /**
+     * Marks the end of the evaluation of the projects, after which configurations are resolved to calculate the task
+     * graph.
+     */
+    void projectsEvaluated() {
+        phase = "task graph calculation";
+    }
+
+    @Override
+    public void beforeResolve(ResolvableDependencies dependencies) {
+        Resolution resolution = new Resolution(dependencies.getPath(), phase, System.currentTimeMillis(), findTrigger(), evaluatedProject.get());
+        synchronized (ongoingResolutions) {
+            ongoingResolutions.put(dependencies, resolution);
+        }
+    }
+
+    @Override
+    public void afterResolve(ResolvableDependencies dependencies) {
+        Resolution resolution;
+        synchronized (ongoingResolutions) {
+            resolution = ongoingResolutions.remove(dependencies);
+        }
+        if (resolution != null) {
+            resolution.endTime = System.currentTimeMillis();
+            synchronized (resolutions) {
+                resolutions.add(resolution);
+            }
+        }
+    }
+
+    /**
+     * Passes the total resolution time per phase and the slowest resolved configurations to the given consumer as custom
+     * values, slowest first. The resolutions that never finished, because they failed, are counted per phase.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        List<Resolution> finishedResolutions;
+        synchronized (resolutions) {
+            finishedResolutions = new ArrayList<>(resolutions);
+        }
+        List<Resolution> failedResolutions;
+        synchronized (ongoingResolutions) {
+            failedResolutions = new ArrayList<>(ongoingResolutions.values());
+            ongoingResolutions.clear();
+        }
+        finishedResolutions.sort((a, b) -> Long.compare(b.duration(), a.duration()));
+
+        // the number of resolved configurations, their summed resolution time and the number of failed resolutions
+        Map<String, long[]> totalsByPhase = new LinkedHashMap<>();
+        for (Resolution resolution : finishedResolutions) {
+            long[] totals = totalsByPhase.computeIfAbsent(resolution.phase, p -> new long[3]);
+            totals[0]++;
+            totals[1] += resolution.duration();
+        }
+        for (Resolution resolution : failedResolutions) {
+            totalsByPhase.computeIfAbsent(resolution.phase, p -> new long[3])[2]++;
+        }
+        totalsByPhase.forEach((phase, totals) ->
+            customValues.accept("Dependency resolution during " + phase, totals[0] + " configurations, " + formatSeconds(totals[1])
+                + (totals[2] > 0 ? ", " + totals[2] + " failed" : ""))
+        );
+        for (Resolution resolution : finishedResolutions.subList(0, Math.min(slowest, finishedResolutions.size()))) {
+            customValues.accept("Configuration resolved during " + resolution.phase, resolution.path
+                + " (" + formatSeconds(resolution.duration()) + ", after " + formatSeconds(resolution.startTime - startTime)
+                + ", by " + resolution.trigger + (resolution.project != null ? " while evaluating " + resolution.project : "") + ")");
+        }
+    }
+
+    private static String findTrigger() {
+        for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+            String className = frame.getClassName();
+            if (INFRASTRUCTURE_PACKAGES.stream().noneMatch(className::startsWith) && !isInPluginPackage(className)) {
+                return describeCaller(className);
+            }
+        }
+        return "Gradle";
+    }
+
+    private static boolean isInPluginPackage(String className) {
+        return className.startsWith(PLUGIN_PACKAGE + ".") && className.lastIndexOf('.') == PLUGIN_PACKAGE.length();
+    }
+
+    private static String describeCaller(String className) {
+        // nested classes and lambdas are attributed to their enclosing class, generated subclasses to their declared type
+        int nested = className.indexOf('$');
+        String caller = nested > 0 ? className.substring(0, nested) : className;
+        caller = caller.endsWith("_Decorated") ? caller.substring(0, caller.length() - "_Decorated".length()) : caller;
+        if (caller.startsWith("build_") || caller.equals("Build_gradle") || caller.startsWith("settings_") || caller.equals("Settings_gradle")) {
+            return "build script";
+        }
+        return caller;
+    }
+
+    private static final class Resolution {
+
+        private final String path;
+        private final String phase;
+        private final long startTime;
+        private final String trigger;
+        private final String project;
+        private long endTime;
+
+        private Resolution(String path, String phase, long startTime, String trigger, String project) {
+            this.path = path;
+            this.phase = phase;
+            this.startTime = startTime;
+            this.trigger = trigger;
+            this.project = project;
+        }
+
+        long duration() {
+            return endTime - startTime;
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.gradle;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+/**
+ * Build service that monitors the garbage collection of the Gradle daemon for as long as the build runs.
+ * <p>
+ * The service is registered as a task completion listener only so that it is also created when the configuration of the
+ * build is loaded from the configuration cache, it ignores the events themselves.
+ */
+public abstract class GarbageCollectionMonitorService implements BuildService<BuildServiceParameters.None>, OperationCompletionListener, AutoCloseable {
+
+    static final String NAME = "commonCustomUserDataGarbageCollectionMonitor";
+
+    private final GarbageCollectionMonitor monitor = new GarbageCollectionMonitor();
+
+    public GarbageCollectionMonitorService() {
+        monitor.start();
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+    }
+
+    GarbageCollectionMonitor getMonitor() {
+        return monitor;
+    }
+
+    @Override
+    public void close() {
+        monitor.stop();
+    }
+
+}
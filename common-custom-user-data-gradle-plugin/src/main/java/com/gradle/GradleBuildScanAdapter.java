@@ -0,0 +1,56 @@
+package com.gradle;
+
+import com.gradle.scan.plugin.BuildScanExtension;
+import org.gradle.api.Action;
+
+import java.util.function.Consumer;
+
+final class GradleBuildScanAdapter implements BuildScanAdapter {
+
+    private final BuildScanExtension buildScan;
+
+    GradleBuildScanAdapter(BuildScanExtension buildScan) {
+        this.buildScan = buildScan;
+    }
+
+    @Override
+    public void tag(String tag) {
+        buildScan.tag(tag);
+    }
+
+    @Override
+    public void value(String name, String value) {
+        buildScan.value(name, value);
+    }
+
+    @Override
+    public void link(String name, String url) {
+        buildScan.link(name, url);
+    }
+
+    @Override
+    public String getServer() {
+        return buildScan.getServer();
+    }
+
+    @Override
+    public void background(Consumer<? super BuildScanAdapter> action) {
+        buildScan.background(new BackgroundAction(action));
+    }
+
+    private static final class BackgroundAction implements Action<BuildScanExtension> {
+
+        private final Consumer<? super BuildScanAdapter> action;
+
+        private BackgroundAction(Consumer<? super BuildScanAdapter> action) {
+            this.action = action;
+        }
+
+        @Override
+        public void execute(BuildScanExtension buildScan) {
+            action.accept(new GradleBuildScanAdapter(buildScan));
+        }
+
+    }
+
+}
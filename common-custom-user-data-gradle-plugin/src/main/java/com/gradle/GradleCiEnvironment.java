@@ -0,0 +1,57 @@
+package com.gradle;
+
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+final class GradleCiEnvironment implements CiEnvironment {
+
+    private final ProviderFactory providers;
+    private final Gradle gradle;
+    private final ConfigurationInputs inputs;
+    private final Map<String, Optional<String>> envVariables = new HashMap<>();
+    private final Map<String, Optional<String>> sysProperties = new HashMap<>();
+
+    GradleCiEnvironment(ProviderFactory providers, Gradle gradle, ConfigurationInputs inputs) {
+        this.providers = providers;
+        this.gradle = gradle;
+        this.inputs = inputs;
+    }
+
+    @Override
+    public Optional<String> envVariable(String name) {
+        // each environment variable becomes a configuration cache input only once
+        return envVariables.computeIfAbsent(name, n -> record("env", n, GradleUtils.envVariable(n, providers)));
+    }
+
+    @Override
+    public Optional<String> sysProperty(String name) {
+        return sysProperties.computeIfAbsent(name, n -> record("sys", n, GradleUtils.sysProperty(n, providers)));
+    }
+
+    @Override
+    public Optional<String> projectProperty(String name) {
+        return record("project", name, GradleUtils.projectProperty(name, providers, gradle));
+    }
+
+    @Override
+    public Properties readPropertiesFile(String name) {
+        return GradleUtils.readPropertiesFile(name, providers, gradle);
+    }
+
+    @Override
+    public void withProjectProperties(Runnable action) {
+        // wait for projects to load to ensure Gradle project properties are initialized
+        gradle.projectsEvaluated(g -> action.run());
+    }
+
+    private Optional<String> record(String kind, String name, Optional<String> value) {
+        inputs.record(kind, name, value);
+        return value;
+    }
+
+}
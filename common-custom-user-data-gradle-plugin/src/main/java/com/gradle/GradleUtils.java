@@ -0,0 +1,92 @@
+package com.gradle;
+
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.util.GradleVersion;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+
+final class GradleUtils {
+
+    static Optional<String> envVariable(String name, ProviderFactory providers) {
+        if (isGradle65OrNewer()) {
+            Provider<String> variable = providers.environmentVariable(name).forUseAtConfigurationTime();
+            return Optional.ofNullable(variable.getOrNull());
+        }
+        return Optional.ofNullable(System.getenv(name));
+    }
+
+    static Optional<String> projectProperty(String name, ProviderFactory providers, Gradle gradle) {
+        if (isGradle65OrNewer()) {
+            // invalidate configuration cache if different Gradle property value is set on the cmd line,
+            // but in any case access Gradle property directly since project properties set in a build script or
+            // init script are not fetched by ProviderFactory.gradleProperty
+            providers.gradleProperty(name).forUseAtConfigurationTime();
+        }
+        return Optional.ofNullable((String) gradle.getRootProject().findProperty(name));
+    }
+
+    static Optional<String> sysProperty(String name, ProviderFactory providers) {
+        if (isGradle65OrNewer()) {
+            Provider<String> property = providers.systemProperty(name).forUseAtConfigurationTime();
+            return Optional.ofNullable(property.getOrNull());
+        }
+        return Optional.ofNullable(System.getProperty(name));
+    }
+
+    static Optional<Boolean> booleanSysProperty(String name, ProviderFactory providers) {
+        return sysProperty(name, providers).map(Boolean::parseBoolean);
+    }
+
+    static Optional<Duration> durationSysProperty(String name, ProviderFactory providers) {
+        return sysProperty(name, providers).map(Duration::parse);
+    }
+
+    static Optional<Integer> integerSysProperty(String name, ProviderFactory providers) {
+        return sysProperty(name, providers).map(Integer::parseInt);
+    }
+
+    static Optional<String> firstSysPropertyKeyStartingWith(String keyPrefix, ProviderFactory providers) {
+        Optional<String> key = SystemPropertyKeyIndex.firstKeyStartingWith(keyPrefix);
+        if (isGradle65OrNewer()) {
+            key.ifPresent(k -> providers.systemProperty(k).forUseAtConfigurationTime());
+        }
+        return key;
+    }
+
+    static Properties readPropertiesFile(String name, ProviderFactory providers, Gradle gradle) {
+        try (InputStream input = readFile(name, providers, gradle)) {
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static InputStream readFile(String name, ProviderFactory providers, Gradle gradle) throws FileNotFoundException {
+        if (isGradle65OrNewer()) {
+            RegularFile file = gradle.getRootProject().getLayout().getProjectDirectory().file(name);
+            Provider<byte[]> fileContent = providers.fileContents(file).getAsBytes().forUseAtConfigurationTime();
+            return new ByteArrayInputStream(fileContent.getOrElse(new byte[0]));
+        }
+        return new FileInputStream(name);
+    }
+
+    private static boolean isGradle65OrNewer() {
+        return GradleVersion.current().compareTo(GradleVersion.version("6.5")) >= 0;
+    }
+
+    private GradleUtils() {
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.gradle;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+import java.time.Duration;
+
+/**
+ * Build service that samples the resource usage of the build process tree for as long as the build runs.
+ * <p>
+ * The service is registered as a task completion listener only so that it is also created when the configuration of the
+ * build is loaded from the configuration cache, it ignores the events themselves.
+ */
+public abstract class ProcessResourceMonitor implements BuildService<ProcessResourceMonitor.Parameters>, OperationCompletionListener, AutoCloseable {
+
+    static final String NAME = "commonCustomUserDataProcessResourceMonitor";
+
+    public interface Parameters extends BuildServiceParameters {
+
+        Property<Duration> getInterval();
+
+    }
+
+    private final ProcessResourceSampler sampler;
+
+    public ProcessResourceMonitor() {
+        this.sampler = new ProcessResourceSampler(getParameters().getInterval().get());
+        sampler.start();
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+    }
+
+    ProcessResourceSampler getSampler() {
+        return sampler;
+    }
+
+    @Override
+    public void close() {
+        sampler.stop();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.gradle;
+
+import org.gradle.api.NamedDomainObjectCollection;
+import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.Task;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.reporting.Report;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Locates the XML reports of the tasks of the supported quality check tools.
+ * <p>
+ * The tasks are matched by the name of their type, since the FindBugs task no longer exists in recent Gradle versions,
+ * and the SpotBugs task is contributed by a third-party plugin. Their reports are accessed through the methods of the
+ * Gradle API available at runtime, which changed over the supported Gradle versions.
+ */
+final class QualityCheckReports {
+
+    private static final Map<String, QualityReportFormat> FORMATS_BY_TASK_TYPE = new LinkedHashMap<>();
+
+    static {
+        FORMATS_BY_TASK_TYPE.put("org.gradle.api.plugins.quality.Checkstyle", QualityReportFormat.CHECKSTYLE);
+        FORMATS_BY_TASK_TYPE.put("org.gradle.api.plugins.quality.CodeNarc", QualityReportFormat.CODENARC);
+        FORMATS_BY_TASK_TYPE.put("org.gradle.api.plugins.quality.FindBugs", QualityReportFormat.FINDBUGS);
+        FORMATS_BY_TASK_TYPE.put("com.github.spotbugs.SpotBugsTask", QualityReportFormat.SPOTBUGS);
+    }
+
+    private QualityCheckReports() {
+    }
+
+    static Optional<QualityReportFormat> formatOf(Task task) {
+        // tasks are instances of generated subclasses of their declared type
+        String taskType = task.getClass().getName();
+        return FORMATS_BY_TASK_TYPE.entrySet().stream()
+            .filter(e -> taskType.startsWith(e.getKey()))
+            .map(Map.Entry::getValue)
+            .findFirst();
+    }
+
+    static void enableXmlReport(Task task) {
+        Report report = findXmlReport(task);
+        if (report == null) {
+            return;
+        }
+
+        Object required = invoke(report, "getRequired");
+        if (required instanceof Property) {
+            @SuppressWarnings("unchecked")
+            Property<Boolean> requiredProperty = (Property<Boolean>) required;
+            requiredProperty.set(true);
+        } else {
+            invoke(report, "setEnabled", true);
+        }
+    }
+
+    static File xmlReportFile(Task task) {
+        Report report = findXmlReport(task);
+        if (report == null) {
+            return null;
+        }
+
+        Object outputLocation = invoke(report, "getOutputLocation");
+        if (outputLocation instanceof Provider) {
+            Object location = ((Provider<?>) outputLocation).getOrNull();
+            return location instanceof FileSystemLocation ? ((FileSystemLocation) location).getAsFile() : null;
+        } else {
+            Object destination = invoke(report, "getDestination");
+            return destination instanceof File ? (File) destination : null;
+        }
+    }
+
+    private static Report findXmlReport(Task task) {
+        Object reports = invoke(task, "getReports");
+        Object report = null;
+        if (reports instanceof NamedDomainObjectContainer) {
+            // the reports of the SpotBugs task only exist once they are configured
+            report = ((NamedDomainObjectContainer<?>) reports).maybeCreate("xml");
+        } else if (reports instanceof NamedDomainObjectCollection) {
+            report = ((NamedDomainObjectCollection<?>) reports).findByName("xml");
+        }
+        return report instanceof Report ? (Report) report : null;
+    }
+
+    private static Object invoke(Object target, String methodName, Object... args) {
+        // reports are looked up through their public interface, as their implementation types are internal
+        Class<?> type = target instanceof Report ? Report.class : target.getClass();
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(methodName) && method.getParameterCount() == args.length) {
+                try {
+                    return method.invoke(target, args);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+}
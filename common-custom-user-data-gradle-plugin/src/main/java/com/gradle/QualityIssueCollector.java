@@ -0,0 +1,113 @@
+package com.gradle;
+
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskSkippedResult;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Build service that reads the XML reports of the quality check tasks of the build, received as task completion events.
+ * <p>
+ * Each report is read in the background as soon as its task has finished, so reading the reports neither delays the
+ * tasks that depend on the quality check tasks nor the build itself, and the issues are only joined once the build has
+ * finished.
+ */
+public abstract class QualityIssueCollector implements BuildService<QualityIssueCollector.Parameters>, OperationCompletionListener, AutoCloseable {
+
+    static final String NAME = "commonCustomUserDataQualityIssueCollector";
+
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The name of the format of the XML report of each quality check task, keyed by the path of the task.
+         */
+        MapProperty<String, String> getReportFormats();
+
+        /**
+         * The XML report file of each quality check task, keyed by the path of the task.
+         */
+        MapProperty<String, File> getReportFiles();
+
+        Property<File> getRootDir();
+
+        /**
+         * The number of issues to sample when summarizing the issues, or a negative number to not summarize them.
+         */
+        Property<Integer> getSummaryMaxSamples();
+
+        /**
+         * The file to write all issues to when summarizing them.
+         */
+        Property<File> getDetailsFile();
+
+        /**
+         * The directory to cache the parsed reports in between builds, if any.
+         */
+        Property<File> getCacheDir();
+
+    }
+
+    private Map<String, String> reportFormats;
+    private Map<String, File> reportFiles;
+    private QualityIssues issues;
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (!(event instanceof TaskFinishEvent) || event.getResult() instanceof TaskSkippedResult) {
+            return;
+        }
+
+        String taskPath = ((TaskFinishEvent) event).getDescriptor().getTaskPath();
+        String format = getReportFormats().get(taskPath);
+        File reportFile = getReportFiles().get(taskPath);
+        if (format != null && reportFile != null) {
+            getIssues().collect(QualityReportFormat.valueOf(format), reportFile);
+        }
+    }
+
+    /**
+     * Passes the issues found by the quality check tasks to the given consumer as custom values.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        getIssues().report(customValues);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (issues != null) {
+            issues.close();
+        }
+    }
+
+    private synchronized Map<String, String> getReportFormats() {
+        // read the parameters only once, as each read creates a copy of the map
+        if (reportFormats == null) {
+            reportFormats = getParameters().getReportFormats().get();
+        }
+        return reportFormats;
+    }
+
+    private synchronized Map<String, File> getReportFiles() {
+        if (reportFiles == null) {
+            reportFiles = getParameters().getReportFiles().get();
+        }
+        return reportFiles;
+    }
+
+    private synchronized QualityIssues getIssues() {
+        if (issues == null) {
+            Parameters parameters = getParameters();
+            issues = new QualityIssues(parameters.getRootDir().get(), parameters.getSummaryMaxSamples().get(), parameters.getDetailsFile().get(), parameters.getCacheDir().getOrNull());
+        }
+        return issues;
+    }
+
+}
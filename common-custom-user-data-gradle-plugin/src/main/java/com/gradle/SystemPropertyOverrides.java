@@ -6,9 +6,9 @@ import org.gradle.caching.configuration.BuildCacheConfiguration;
 import org.gradle.caching.http.HttpBuildCache;
 
 import static com.gradle.Utils.appendPathAndTrailingSlash;
-import static com.gradle.Utils.booleanSysProperty;
-import static com.gradle.Utils.durationSysProperty;
-import static com.gradle.Utils.sysProperty;
+import static com.gradle.GradleUtils.booleanSysProperty;
+import static com.gradle.GradleUtils.durationSysProperty;
+import static com.gradle.GradleUtils.sysProperty;
 
 /**
  * Provide standardized Gradle Enterprise configuration.
@@ -0,0 +1,142 @@
+package com.gradle;
+
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.OperationResult;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskSkippedResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Build service that profiles the duration of all executed tasks of the build, received as task completion events.
+ * <p>
+ * The durations are recorded per task type in histograms, from which the 50th, 95th and 99th percentiles are read at the
+ * end of the build. Additionally, the slowest tasks of the build and the tasks that took longer than the threshold
+ * configured for their type are reported. Recording a task neither allocates nor takes time proportional to the number
+ * of tasks, unless the task is one of the slowest ones so far or exceeds its threshold.
+ */
+public abstract class TaskExecutionProfiler implements BuildService<TaskExecutionProfiler.Parameters>, OperationCompletionListener {
+
+    static final String NAME = "commonCustomUserDataTaskExecutionProfiler";
+
+    private static final String UNKNOWN_TASK_TYPE = "unknown";
+    private static final String ANY_TASK_TYPE = "*";
+
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The simple name of the type of each scheduled task, keyed by the path of the task.
+         */
+        MapProperty<String, String> getTaskTypes();
+
+        /**
+         * The duration in milliseconds above which a task of a given type is reported as slow, keyed by the simple name
+         * of the type, or by {@code *} for all types without a threshold of their own.
+         */
+        MapProperty<String, Long> getThresholds();
+
+        Property<Integer> getSlowestTasks();
+
+    }
+
+    private final Map<String, DurationHistogram> histograms = new ConcurrentHashMap<>();
+    private final List<String> slowTasks = new ArrayList<>();
+    private String[] slowestTaskPaths;
+    private long[] slowestTaskDurations;
+    private int slowestTaskCount;
+    private Map<String, String> taskTypes;
+    private Map<String, Long> thresholds;
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (!(event instanceof TaskFinishEvent) || event.getResult() instanceof TaskSkippedResult) {
+            return;
+        }
+
+        String taskPath = ((TaskFinishEvent) event).getDescriptor().getTaskPath();
+        OperationResult result = event.getResult();
+        long durationMillis = result.getEndTime() - result.getStartTime();
+        String taskType = getTaskTypes().getOrDefault(taskPath, UNKNOWN_TASK_TYPE);
+
+        histograms.computeIfAbsent(taskType, t -> new DurationHistogram()).record(durationMillis);
+        recordIfSlowest(taskPath, durationMillis);
+        Long threshold = getThresholds().getOrDefault(taskType, getThresholds().get(ANY_TASK_TYPE));
+        if (threshold != null && durationMillis > threshold) {
+            synchronized (slowTasks) {
+                slowTasks.add(taskPath);
+            }
+        }
+    }
+
+    /**
+     * Passes the profile of the build to the given consumer as custom values.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        new TreeMap<>(histograms).forEach((taskType, histogram) -> customValues.accept("Task duration " + taskType,
+            "count=" + histogram.getCount()
+                + ", p50=" + formatSeconds(histogram.percentile(0.5))
+                + ", p95=" + formatSeconds(histogram.percentile(0.95))
+                + ", p99=" + formatSeconds(histogram.percentile(0.99))
+                + ", max=" + formatSeconds(histogram.getMax())));
+
+        synchronized (this) {
+            for (int i = 0; i < slowestTaskCount; i++) {
+                customValues.accept("Slowest task", slowestTaskPaths[i] + " (" + formatSeconds(slowestTaskDurations[i]) + ")");
+            }
+        }
+
+        synchronized (slowTasks) {
+            slowTasks.forEach(taskPath -> customValues.accept("Slow task", taskPath));
+        }
+    }
+
+    private synchronized void recordIfSlowest(String taskPath, long durationMillis) {
+        if (slowestTaskPaths == null) {
+            int slowestTasks = getParameters().getSlowestTasks().get();
+            slowestTaskPaths = new String[slowestTasks];
+            slowestTaskDurations = new long[slowestTasks];
+        }
+        if (slowestTaskCount == slowestTaskPaths.length && (slowestTaskCount == 0 || durationMillis <= slowestTaskDurations[slowestTaskCount - 1])) {
+            return;
+        }
+
+        // insert into the arrays sorted by descending duration, dropping the fastest task if the arrays are full
+        int i = Math.min(slowestTaskCount, slowestTaskPaths.length - 1);
+        while (i > 0 && slowestTaskDurations[i - 1] < durationMillis) {
+            slowestTaskPaths[i] = slowestTaskPaths[i - 1];
+            slowestTaskDurations[i] = slowestTaskDurations[i - 1];
+            i--;
+        }
+        slowestTaskPaths[i] = taskPath;
+        slowestTaskDurations[i] = durationMillis;
+        slowestTaskCount = Math.min(slowestTaskCount + 1, slowestTaskPaths.length);
+    }
+
+    private synchronized Map<String, String> getTaskTypes() {
+        // read the parameters only once, as each read creates a copy of the map
+        if (taskTypes == null) {
+            taskTypes = getParameters().getTaskTypes().get();
+        }
+        return taskTypes;
+    }
+
+    private synchronized Map<String, Long> getThresholds() {
+        if (thresholds == null) {
+            thresholds = getParameters().getThresholds().get();
+        }
+        return thresholds;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.gradle;
+
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.tasks.testing.TestDescriptor;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.OperationResult;
+import org.gradle.tooling.events.task.TaskFailureResult;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskSuccessResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Build service shared by all test tasks of the build that records the maxParallelForks of each executed test task and,
+ * if test events are passed in, aggregates the execution of each test task: the number of test worker processes used,
+ * the wall time of the task, the summed time of its test classes, the resulting utilization of the forks and the slowest
+ * test classes.
+ * <p>
+ * The maxParallelForks of the scheduled test tasks are known once the task graph is ready, and are kept for the tasks
+ * whose actions were executed according to their task completion events, i.e. the tasks that were neither up-to-date,
+ * loaded from the build cache nor skipped.
+ * <p>
+ * The utilization relates the summed time of the test classes to the wall time of the task multiplied by the highest
+ * number of test workers that were alive at the same time. With {@code forkEvery}, many test workers run one after the
+ * other, so the number of distinct test workers would understate the utilization.
+ * <p>
+ * Test events are passed in by the test listener registered on each test task, the wall times of the tasks are received
+ * as task completion events.
+ */
+public abstract class TestExecutionTelemetry implements BuildService<TestExecutionTelemetry.Parameters>, OperationCompletionListener {
+
+    static final String NAME = "commonCustomUserDataTestExecutionTelemetry";
+
+    private static final int SLOWEST_TEST_CLASSES = 3;
+
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The maxParallelForks of each scheduled test task, keyed by the path of the task.
+         */
+        MapProperty<String, Integer> getMaxParallelForks();
+
+    }
+
+    private final Map<String, TestTaskExecution> executions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> executedMaxParallelForks = new ConcurrentHashMap<>();
+
+    void testClassFinished(String taskPath, TestDescriptor testClass, TestResult result) {
+        TestTaskExecution execution = executions.computeIfAbsent(taskPath, p -> new TestTaskExecution());
+        execution.testClassFinished(testClass.getParent().getName(), testClass.getClassName(), result.getStartTime(), result.getEndTime());
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (event instanceof TaskFinishEvent) {
+            String taskPath = ((TaskFinishEvent) event).getDescriptor().getTaskPath();
+            OperationResult result = event.getResult();
+            Integer maxParallelForks = getParameters().getMaxParallelForks().get().get(taskPath);
+            if (maxParallelForks != null && isExecuted(result)) {
+                executedMaxParallelForks.put(taskPath, maxParallelForks);
+            }
+            TestTaskExecution execution = executions.get(taskPath);
+            if (execution != null) {
+                execution.taskFinished(result.getEndTime() - result.getStartTime());
+            }
+        }
+    }
+
+    private static boolean isExecuted(OperationResult result) {
+        if (result instanceof TaskSuccessResult) {
+            TaskSuccessResult success = (TaskSuccessResult) result;
+            return !success.isUpToDate() && !success.isFromCache();
+        }
+        return result instanceof TaskFailureResult;
+    }
+
+    /**
+     * Returns the maxParallelForks of each executed test task, keyed by the path of the task.
+     */
+    Map<String, Integer> getMaxParallelForks() {
+        return new TreeMap<>(executedMaxParallelForks);
+    }
+
+    /**
+     * Returns one summary per executed test task, keyed by the path of the task.
+     */
+    Map<String, String> getSummaries() {
+        Map<String, String> summaries = new LinkedHashMap<>();
+        executions.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(e -> summaries.put(e.getKey(), e.getValue().summary()));
+        return summaries;
+    }
+
+    private static final class TestTaskExecution {
+
+        // the time span from the start of the first to the end of the last test class of each test worker
+        private final Map<String, long[]> forkLifetimes = new HashMap<>();
+        private final List<TestClassDuration> slowestTestClasses = new ArrayList<>(SLOWEST_TEST_CLASSES + 1);
+        private long testTimeMillis;
+        private long wallTimeMillis = -1;
+
+        synchronized void testClassFinished(String fork, String className, long startTime, long endTime) {
+            long durationMillis = endTime - startTime;
+            long[] lifetime = forkLifetimes.computeIfAbsent(fork, f -> new long[]{startTime, endTime});
+            lifetime[0] = Math.min(lifetime[0], startTime);
+            lifetime[1] = Math.max(lifetime[1], endTime);
+            testTimeMillis += durationMillis;
+            if (slowestTestClasses.size() < SLOWEST_TEST_CLASSES || durationMillis > slowestTestClasses.get(slowestTestClasses.size() - 1).durationMillis) {
+                slowestTestClasses.add(new TestClassDuration(className, durationMillis));
+                slowestTestClasses.sort(Comparator.comparingLong((TestClassDuration d) -> d.durationMillis).reversed());
+                if (slowestTestClasses.size() > SLOWEST_TEST_CLASSES) {
+                    slowestTestClasses.remove(SLOWEST_TEST_CLASSES);
+                }
+            }
+        }
+
+        synchronized void taskFinished(long durationMillis) {
+            wallTimeMillis = durationMillis;
+        }
+
+        synchronized String summary() {
+            int concurrentForks = maxConcurrentForks();
+            StringBuilder summary = new StringBuilder();
+            summary.append("forks=").append(forkLifetimes.size());
+            summary.append(", concurrentForks=").append(concurrentForks);
+            if (wallTimeMillis >= 0) {
+                summary.append(", wall=").append(formatSeconds(wallTimeMillis));
+            }
+            summary.append(", testTime=").append(formatSeconds(testTimeMillis));
+            if (wallTimeMillis > 0 && concurrentForks > 0) {
+                long utilization = Math.round(100.0 * testTimeMillis / (wallTimeMillis * concurrentForks));
+                summary.append(", forkUtilization=").append(utilization).append('%');
+            }
+            if (!slowestTestClasses.isEmpty()) {
+                summary.append(", slowest=");
+                for (int i = 0; i < slowestTestClasses.size(); i++) {
+                    TestClassDuration testClass = slowestTestClasses.get(i);
+                    summary.append(i > 0 ? ", " : "").append(testClass.className).append(" (").append(formatSeconds(testClass.durationMillis)).append(')');
+                }
+            }
+            return summary.toString();
+        }
+
+        private int maxConcurrentForks() {
+            // sweep over the starts and ends of the lifetimes, an end sorts before a start at the same time
+            List<long[]> events = new ArrayList<>(forkLifetimes.size() * 2);
+            forkLifetimes.values().forEach(lifetime -> {
+                events.add(new long[]{lifetime[0], 1});
+                events.add(new long[]{lifetime[1], -1});
+            });
+            events.sort(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+            int concurrent = 0;
+            int maxConcurrent = 0;
+            for (long[] event : events) {
+                concurrent += event[1];
+                maxConcurrent = Math.max(maxConcurrent, concurrent);
+            }
+            return maxConcurrent;
+        }
+
+    }
+
+    private static final class TestClassDuration {
+
+        private final String className;
+        private final long durationMillis;
+
+        private TestClassDuration(String className, long durationMillis) {
+            this.className = className;
+            this.durationMillis = durationMillis;
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.gradle;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Build service that fingerprints the system properties of all executed test tasks, and detects the properties whose
+ * values changed since the previous build that executed the same task.
+ * <p>
+ * The values are hashed on the threads executing the test tasks, each with a digest of its own. The hashes of each task
+ * are persisted between builds, and only the properties whose hashes changed are reported, since these changes make the
+ * test tasks miss the build cache without being visible anywhere else.
+ */
+public abstract class TestSystemPropertyDrift implements BuildService<TestSystemPropertyDrift.Parameters> {
+
+    static final String NAME = "commonCustomUserDataTestSystemPropertyDrift";
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(TestSystemPropertyDrift::createDigest);
+    private static final String FINGERPRINT_KEY = "#";
+    private static final String KEY_SEPARATOR = "#sysProps-";
+    private static final String ABSENT = "(absent)";
+
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The file to persist the hashes of the system properties of the test tasks in between builds.
+         */
+        Property<File> getStateFile();
+
+    }
+
+    // the hashes of the system properties of each executed test task, keyed by the path of the task
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * Hashes the given system properties of the given test task.
+     */
+    void record(String taskPath, Map<String, Object> systemProperties) {
+        Map<String, String> taskHashes = new TreeMap<>();
+        systemProperties.forEach((key, value) -> taskHashes.put(key, hash(value)));
+        hashes.put(taskPath, taskHashes);
+    }
+
+    /**
+     * Passes the system properties whose hashes changed since the previous build to the given consumer as custom values,
+     * and persists the hashes of this build.
+     */
+    void report(BiConsumer<String, String> customValues) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+
+        Path stateFile = getParameters().getStateFile().get().toPath();
+        Properties state = load(stateFile);
+        new TreeMap<>(hashes).forEach((taskPath, taskHashes) -> {
+            String fingerprint = hash(taskHashes.toString());
+            String previousFingerprint = state.getProperty(taskPath + FINGERPRINT_KEY);
+            if (previousFingerprint != null && !previousFingerprint.equals(fingerprint)) {
+                // properties that were added or removed are reported as well
+                Set<String> keys = new TreeSet<>(taskHashes.keySet());
+                state.stringPropertyNames().stream()
+                    .filter(name -> name.startsWith(taskPath + KEY_SEPARATOR))
+                    .forEach(name -> keys.add(name.substring(taskPath.length() + KEY_SEPARATOR.length())));
+                for (String key : keys) {
+                    String previous = state.getProperty(taskPath + KEY_SEPARATOR + key, ABSENT);
+                    String current = taskHashes.getOrDefault(key, ABSENT);
+                    if (!previous.equals(current)) {
+                        customValues.accept(taskPath + KEY_SEPARATOR + key, previous + " \u2192 " + current);
+                    }
+                }
+            }
+
+            state.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(taskPath + KEY_SEPARATOR))
+                .forEach(state::remove);
+            taskHashes.forEach((key, hash) -> state.setProperty(taskPath + KEY_SEPARATOR + key, hash));
+            state.setProperty(taskPath + FINGERPRINT_KEY, fingerprint);
+        });
+        store(stateFile, state);
+    }
+
+    private static String hash(Object value) {
+        if (value == null) {
+            return "null";
+        }
+
+        // the digest is reset by digest()
+        byte[] encodedHash = DIGESTS.get().digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (int i = 0; i < encodedHash.length / 4; i++) {
+            hexString.append(String.format("%02x", encodedHash[i]));
+        }
+        return hexString.append("...").toString();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties load(Path stateFile) {
+        Properties state = new Properties();
+        if (Files.isRegularFile(stateFile)) {
+            try (InputStream input = Files.newInputStream(stateFile)) {
+                state.load(input);
+            } catch (IOException | IllegalArgumentException e) {
+                // the hashes of this build are compared by the next build
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    private static void store(Path stateFile, Properties state) {
+        try {
+            Utils.writeAtomically(stateFile, output -> state.store(output, null));
+        } catch (IOException ignored) {
+            // the changes will be detected against the hashes of an earlier build
+        }
+    }
+
+}
@@ -6,8 +6,10 @@ import com.gradle.maven.extension.api.scan.BuildScanApi;
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.MojoExecutionListener;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.logging.Logger;
 
 import javax.inject.Inject;
@@ -43,7 +45,7 @@ public final class CommonCustomUserDataMavenExtension extends AbstractMavenLifec
             logger.debug("Configuring build scan publishing and applying build scan enhancements");
             BuildScanApi buildScan = gradleEnterprise.getBuildScan();
             customGradleEnterpriseConfig.configureBuildScanPublishing(buildScan);
-            new CustomBuildScanEnhancements(buildScan, session).apply();
+            new CustomBuildScanEnhancements(buildScan, session, this::lookupQualityReportListener).apply();
             logger.debug("Finished configuring build scan publishing and applying build scan enhancements");
 
             logger.debug("Configuring build cache");
@@ -58,4 +60,13 @@ public final class CommonCustomUserDataMavenExtension extends AbstractMavenLifec
         }
     }
 
+    private QualityReportListener lookupQualityReportListener() {
+        try {
+            return (QualityReportListener) container.lookup(MojoExecutionListener.class, QualityReportListener.HINT);
+        } catch (ComponentLookupException | ClassCastException e) {
+            logger.warn("Cannot look up object in container, not capturing quality issues: " + QualityReportListener.class, e);
+            return null;
+        }
+    }
+
 }
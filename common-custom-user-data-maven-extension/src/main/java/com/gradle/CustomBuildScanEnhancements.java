@@ -1,37 +1,75 @@
 package com.gradle;
 
 import com.gradle.maven.extension.api.scan.BuildScanApi;
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
 
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import static com.gradle.Utils.appendIfMissing;
-import static com.gradle.Utils.envVariable;
-import static com.gradle.Utils.execAndCheckSuccess;
-import static com.gradle.Utils.execAndGetStdOut;
-import static com.gradle.Utils.firstSysPropertyKeyStartingWith;
-import static com.gradle.Utils.isNotEmpty;
-import static com.gradle.Utils.readPropertiesFile;
+import static com.gradle.MavenUtils.booleanSysProperty;
+import static com.gradle.MavenUtils.durationSysProperty;
+import static com.gradle.MavenUtils.firstSysPropertyKeyStartingWith;
+import static com.gradle.MavenUtils.integerSysProperty;
+import static com.gradle.MavenUtils.sysProperty;
 import static com.gradle.Utils.stripPrefix;
-import static com.gradle.Utils.sysProperty;
-import static com.gradle.Utils.urlEncode;
 
 /**
  * Adds a standard set of useful tags, links and custom values to all build scans published.
  */
 final class CustomBuildScanEnhancements {
 
+    // system properties to configure the capturing of Git metadata
+    public static final String GIT_PARALLEL = "ccud.git.parallel";
+    public static final String GIT_TIMEOUT = "ccud.git.timeout";
+    public static final String GIT_CACHE = "ccud.git.cache";
+    public static final String GIT_STATUS = "ccud.git.status";
+    public static final String GIT_STATUS_MAX_PATHS = "ccud.git.status.maxPaths";
+    public static final String GIT_MAX_OUTPUT_BYTES = "ccud.git.maxOutputBytes";
+
+    // system properties to configure the profiling of the reactor
+    public static final String MOJO_PROFILE = "ccud.mojoProfile";
+    public static final String MOJO_PROFILE_SLOWEST = "ccud.mojoProfile.slowest";
+    public static final String THREAD_UTILIZATION = "ccud.threadUtilization";
+    public static final String THREAD_UTILIZATION_INTERVAL = "ccud.threadUtilization.interval";
+
+    // system properties to configure the sampling of the resource usage of the build processes
+    public static final String PROCESS_SAMPLER = "ccud.processSampler";
+    public static final String PROCESS_SAMPLER_INTERVAL = "ccud.processSampler.interval";
+    public static final String GC_MONITOR = "ccud.gcMonitor";
+
+    // system properties to configure the capturing of the issues found by quality check goals
+    public static final String QUALITY_ISSUES = "ccud.qualityIssues";
+    public static final String QUALITY_ISSUES_SUMMARY = "ccud.qualityIssues.summary";
+    public static final String QUALITY_ISSUES_SUMMARY_MAX_SAMPLES = "ccud.qualityIssues.summary.maxSamples";
+    public static final String QUALITY_ISSUES_CACHE = "ccud.qualityIssues.cache";
+
+    private static final Duration DEFAULT_GIT_TIMEOUT = Duration.ofSeconds(10);
+    private static final int DEFAULT_MOJO_PROFILE_SLOWEST = 10;
+    private static final Duration DEFAULT_THREAD_UTILIZATION_INTERVAL = Duration.ofMillis(100);
+    private static final Duration DEFAULT_PROCESS_SAMPLER_INTERVAL = Duration.ofSeconds(1);
+    private static final int DEFAULT_QUALITY_ISSUES_SUMMARY_MAX_SAMPLES = 10;
+    private static final String MAX_HEAP_SIZE_HINT = "via -Xmx in .mvn/jvm.config or MAVEN_OPTS";
+
     private final BuildScanApi buildScan;
     private final MavenSession mavenSession;
-
-    CustomBuildScanEnhancements(BuildScanApi buildScan, MavenSession mavenSession) {
+    private final Supplier<QualityReportListener> qualityReportListener;
+    private final CiEnvironment ciEnvironment;
+    private final List<CiProvider> ciProviders;
+
+    /**
+     * The quality report listener is only looked up if quality issues are captured, and yields {@code null} if it is not
+     * available.
+     */
+    CustomBuildScanEnhancements(BuildScanApi buildScan, MavenSession mavenSession, Supplier<QualityReportListener> qualityReportListener) {
         this.buildScan = buildScan;
         this.mavenSession = mavenSession;
+        this.qualityReportListener = qualityReportListener;
+        this.ciEnvironment = new MavenCiEnvironment(mavenSession);
+        this.ciProviders = CiProviderRegistry.detect(ciEnvironment);
     }
 
     void apply() {
@@ -40,6 +78,11 @@ final class CustomBuildScanEnhancements {
         captureCiOrLocal();
         captureCiMetadata();
         captureGitMetadata();
+        captureReactorProfile();
+        captureThreadUtilization();
+        captureProcessResources();
+        captureGarbageCollection();
+        captureQualityIssues();
     }
 
     private void captureOs() {
@@ -72,247 +115,93 @@ final class CustomBuildScanEnhancements {
     }
 
     private void captureCiMetadata() {
-        if (isJenkins() || isHudson()) {
-            envVariable("BUILD_URL").ifPresent(url ->
-                buildScan.link(isJenkins() ? "Jenkins build" : "Hudson build", url));
-            envVariable("BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("NODE_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI node", value));
-            envVariable("JOB_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("STAGE_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI stage", value));
-        }
-
-        if (isTeamCity()) {
-            Optional<String> teamCityConfigFile = projectProperty("teamcity.configuration.properties.file");
-            Optional<String> buildNumber = projectProperty("build.number");
-            Optional<String> buildTypeId = projectProperty("teamcity.buildType.id");
-            if (teamCityConfigFile.isPresent()
-                && buildNumber.isPresent()
-                && buildTypeId.isPresent()) {
-                Properties properties = readPropertiesFile(teamCityConfigFile.get());
-                String teamCityServerUrl = properties.getProperty("teamcity.serverUrl");
-                if (teamCityServerUrl != null) {
-                    String buildUrl = appendIfMissing(teamCityServerUrl, "/") + "viewLog.html?buildNumber=" + urlEncode(buildNumber.get()) + "&buildTypeId=" + urlEncode(buildTypeId.get());
-                    buildScan.link("TeamCity build", buildUrl);
-                }
-            }
-            buildNumber.ifPresent(value ->
-                buildScan.value("CI build number", value));
-            buildTypeId.ifPresent(value ->
-                addCustomValueAndSearchLink("CI build config", value));
-            projectProperty("agent.name").ifPresent(value ->
-                addCustomValueAndSearchLink("CI agent", value));
-        }
-
-        if (isCircleCI()) {
-            envVariable("CIRCLE_BUILD_URL").ifPresent(url ->
-                buildScan.link("CircleCI build", url));
-            envVariable("CIRCLE_BUILD_NUM").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("CIRCLE_JOB").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("CIRCLE_WORKFLOW_ID").ifPresent(value ->
-                addCustomValueAndSearchLink("CI workflow", value));
-        }
-
-        if (isBamboo()) {
-            envVariable("bamboo_resultsUrl").ifPresent(url ->
-                buildScan.link("Bamboo build", url));
-            envVariable("bamboo_buildNumber").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("bamboo_planName").ifPresent(value ->
-                addCustomValueAndSearchLink("CI plan", value));
-            envVariable("bamboo_buildPlanName").ifPresent(value ->
-                addCustomValueAndSearchLink("CI build plan", value));
-            envVariable("bamboo_agentId").ifPresent(value ->
-                addCustomValueAndSearchLink("CI agent", value));
-        }
-
-        if (isGitHubActions()) {
-            Optional<String> gitHubRepository = envVariable("GITHUB_REPOSITORY");
-            Optional<String> gitHubRunId = envVariable("GITHUB_RUN_ID");
-            if (gitHubRepository.isPresent() && gitHubRunId.isPresent()) {
-                buildScan.link("GitHub Actions build", "https://github.com/" + gitHubRepository.get() + "/actions/runs/" + gitHubRunId.get());
-            }
-            envVariable("GITHUB_WORKFLOW").ifPresent(value ->
-                addCustomValueAndSearchLink("GitHub workflow", value));
-        }
-
-        if (isGitLab()) {
-            envVariable("CI_JOB_URL").ifPresent(url ->
-                buildScan.link("GitLab build", url));
-            envVariable("CI_PIPELINE_URL").ifPresent(url ->
-                buildScan.link("GitLab pipeline", url));
-            envVariable("CI_JOB_NAME").ifPresent(value1 ->
-                addCustomValueAndSearchLink("CI job", value1));
-            envVariable("CI_JOB_STAGE").ifPresent(value ->
-                addCustomValueAndSearchLink("CI stage", value));
-        }
-
-        if (isTravis()) {
-            envVariable("TRAVIS_BUILD_WEB_URL").ifPresent(url ->
-                buildScan.link("Travis build", url));
-            envVariable("TRAVIS_BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
-            envVariable("TRAVIS_JOB_NAME").ifPresent(value ->
-                addCustomValueAndSearchLink("CI job", value));
-            envVariable("TRAVIS_EVENT_TYPE").ifPresent(buildScan::tag);
-        }
-
-        if (isBitrise()) {
-            envVariable("BITRISE_BUILD_URL").ifPresent(url ->
-                buildScan.link("Bitrise build", url));
-            envVariable("BITRISE_BUILD_NUMBER").ifPresent(value ->
-                buildScan.value("CI build number", value));
-        }
+        BuildScanAdapter buildScanAdapter = new MavenBuildScanAdapter(buildScan);
+        ciProviders.forEach(provider -> provider.captureMetadata(ciEnvironment, buildScanAdapter));
     }
 
     private boolean isCi() {
-        return isGenericCI() || isJenkins() || isHudson() || isTeamCity() || isCircleCI() || isBamboo() || isGitHubActions() || isGitLab() || isTravis() || isBitrise();
-    }
-
-    private boolean isGenericCI() {
-        return envVariable("CI").isPresent() || sysProperty("CI").isPresent();
-    }
-
-    private boolean isJenkins() {
-        return envVariable("JENKINS_URL").isPresent();
-    }
-
-    private boolean isHudson() {
-        return envVariable("HUDSON_URL").isPresent();
+        return !ciProviders.isEmpty();
     }
 
-    private boolean isTeamCity() {
-        return envVariable("TEAMCITY_VERSION").isPresent();
-    }
-
-    private boolean isCircleCI() {
-        return envVariable("CIRCLE_BUILD_URL").isPresent();
-    }
-
-    private boolean isBamboo() {
-        return envVariable("bamboo_resultsUrl").isPresent();
-    }
-
-    private boolean isGitHubActions() {
-        return envVariable("GITHUB_ACTIONS").isPresent();
+    private void captureGitMetadata() {
+        boolean parallel = booleanSysProperty(GIT_PARALLEL).orElse(false);
+        Duration timeout = durationSysProperty(GIT_TIMEOUT).orElse(DEFAULT_GIT_TIMEOUT);
+        File rootDir = mavenSession.getRequest().getMultiModuleProjectDirectory();
+        File cacheFile = booleanSysProperty(GIT_CACHE).orElse(false) && rootDir != null ? new File(rootDir, ".mvn/.gradle-enterprise/common-custom-user-data/git-metadata.properties") : null;
+        // a negative number of paths denotes the full git status output
+        int statusMaxPaths = sysProperty(GIT_STATUS).orElse("full").equals("summary") ? integerSysProperty(GIT_STATUS_MAX_PATHS).orElse(0) : -1;
+        int maxOutputBytes = integerSysProperty(GIT_MAX_OUTPUT_BYTES).orElse(0);
+        String ciBranchName = ciProviders.stream()
+            .map(provider -> provider.getBranchName(ciEnvironment))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .findFirst()
+            .orElse(null);
+        new MavenBuildScanAdapter(buildScan).background(new GitMetadataCapture(parallel, timeout, cacheFile, statusMaxPaths, maxOutputBytes, ciBranchName));
+    }
+
+    private void captureReactorProfile() {
+        if (booleanSysProperty(MOJO_PROFILE).orElse(false)) {
+            int slowest = mojoProfileSlowest();
+            ReactorProfile profile = new ReactorProfile();
+            MavenExecutionRequest request = mavenSession.getRequest();
+            request.setExecutionListener(new ReactorProfilingListener(request.getExecutionListener(), profile));
+            buildScan.buildFinished(result -> profile.report(mavenSession, slowest, buildScan::value));
+        }
     }
 
-    private boolean isGitLab() {
-        return envVariable("GITLAB_CI").isPresent();
+    static int mojoProfileSlowest() {
+        // a negative number of slowest goals and modules captures none of them, like zero
+        return Math.max(0, integerSysProperty(MOJO_PROFILE_SLOWEST).orElse(DEFAULT_MOJO_PROFILE_SLOWEST));
     }
 
-    private boolean isTravis() {
-        return envVariable("TRAVIS_JOB_ID").isPresent();
+    private void captureThreadUtilization() {
+        if (booleanSysProperty(THREAD_UTILIZATION).orElse(false)) {
+            Duration interval = durationSysProperty(THREAD_UTILIZATION_INTERVAL).orElse(DEFAULT_THREAD_UTILIZATION_INTERVAL);
+            MavenExecutionRequest request = mavenSession.getRequest();
+            ThreadUtilizationSampler sampler = new ThreadUtilizationSampler(request.getDegreeOfConcurrency(), interval);
+            request.setExecutionListener(new ThreadUtilizationListener(request.getExecutionListener(), sampler));
+            sampler.start();
+            buildScan.buildFinished(result -> sampler.report(buildScan::value));
+        }
     }
 
-    private boolean isBitrise() {
-        return envVariable("BITRISE_BUILD_URL").isPresent();
+    private void captureProcessResources() {
+        if (booleanSysProperty(PROCESS_SAMPLER).orElse(false) && ProcessResourceSampler.isSupported()) {
+            Duration interval = durationSysProperty(PROCESS_SAMPLER_INTERVAL).orElse(DEFAULT_PROCESS_SAMPLER_INTERVAL);
+            ProcessResourceSampler sampler = new ProcessResourceSampler(interval);
+            sampler.start();
+            buildScan.buildFinished(result -> sampler.report(buildScan::value));
+        }
     }
 
-    private void captureGitMetadata() {
-        buildScan.background(new CaptureGitMetadataAction());
+    private void captureGarbageCollection() {
+        if (booleanSysProperty(GC_MONITOR).orElse(false)) {
+            GarbageCollectionMonitor monitor = new GarbageCollectionMonitor();
+            monitor.start();
+            buildScan.buildFinished(result -> monitor.report(MAX_HEAP_SIZE_HINT, buildScan::value));
+        }
     }
 
-    private static final class CaptureGitMetadataAction implements Consumer<BuildScanApi> {
-
-        @Override
-        public void accept(BuildScanApi buildScan) {
-            if (!isGitInstalled()) {
+    private void captureQualityIssues() {
+        if (booleanSysProperty(QUALITY_ISSUES).orElse(false)) {
+            QualityReportListener listener = qualityReportListener.get();
+            if (listener == null) {
                 return;
             }
-
-            String gitRepo = execAndGetStdOut("git", "config", "--get", "remote.origin.url");
-            String gitCommitId = execAndGetStdOut("git", "rev-parse", "--verify", "HEAD");
-            String gitCommitShortId = execAndGetStdOut("git", "rev-parse", "--short=8", "--verify", "HEAD");
-            String gitBranchName = getGitBranchName(() -> execAndGetStdOut("git", "rev-parse", "--abbrev-ref", "HEAD"));
-            String gitStatus = execAndGetStdOut("git", "status", "--porcelain");
-
-            if (isNotEmpty(gitRepo)) {
-                buildScan.value("Git repository", gitRepo);
-            }
-            if (isNotEmpty(gitCommitId)) {
-                buildScan.value("Git commit id", gitCommitId);
-            }
-            if (isNotEmpty(gitCommitShortId)) {
-                addCustomValueAndSearchLink(buildScan, "Git commit id", "Git commit id short", gitCommitShortId);
-            }
-            if (isNotEmpty(gitBranchName)) {
-                buildScan.tag(gitBranchName);
-                buildScan.value("Git branch", gitBranchName);
-            }
-            if (isNotEmpty(gitStatus)) {
-                buildScan.tag("Dirty");
-                buildScan.value("Git status", gitStatus);
-            }
-
-            if (isNotEmpty(gitRepo) && isNotEmpty(gitCommitId)) {
-                if (gitRepo.contains("github.com/") || gitRepo.contains("github.com:")) {
-                    Matcher matcher = Pattern.compile("(.*)github\\.com[/|:](.*)").matcher(gitRepo);
-                    if (matcher.matches()) {
-                        String rawRepoPath = matcher.group(2);
-                        String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
-                        buildScan.link("Github source", "https://github.com/" + repoPath + "/tree/" + gitCommitId);
-                    }
-                } else if (gitRepo.contains("gitlab.com/") || gitRepo.contains("gitlab.com:")) {
-                    Matcher matcher = Pattern.compile("(.*)gitlab\\.com[/|:](.*)").matcher(gitRepo);
-                    if (matcher.matches()) {
-                        String rawRepoPath = matcher.group(2);
-                        String repoPath = rawRepoPath.endsWith(".git") ? rawRepoPath.substring(0, rawRepoPath.length() - 4) : rawRepoPath;
-                        buildScan.link("GitLab Source", "https://gitlab.com/" + repoPath + "/-/commit/" + gitCommitId);
-                    }
-                }
-            }
-        }
-
-        private boolean isGitInstalled() {
-            return execAndCheckSuccess("git", "--version");
+            // a negative number of samples denotes one custom value per issue
+            int summaryMaxSamples = booleanSysProperty(QUALITY_ISSUES_SUMMARY).orElse(false) ? integerSysProperty(QUALITY_ISSUES_SUMMARY_MAX_SAMPLES).orElse(DEFAULT_QUALITY_ISSUES_SUMMARY_MAX_SAMPLES) : -1;
+            File rootDir = mavenSession.getRequest().getMultiModuleProjectDirectory();
+            File detailsFile = new File(mavenSession.getTopLevelProject().getBuild().getDirectory(), "common-custom-user-data/quality-issues.txt.gz");
+            File cacheDir = booleanSysProperty(QUALITY_ISSUES_CACHE).orElse(false) && rootDir != null ? new File(rootDir, ".mvn/.gradle-enterprise/common-custom-user-data/quality-reports") : null;
+            QualityIssues issues = new QualityIssues(rootDir != null ? rootDir : mavenSession.getTopLevelProject().getBasedir(), summaryMaxSamples, detailsFile, cacheDir);
+            listener.collectInto(issues);
+            buildScan.buildFinished(result -> {
+                listener.collectInto(null);
+                issues.report(buildScan::value);
+                issues.close();
+            });
         }
-
-        private String getGitBranchName(Supplier<String> gitCommand) {
-            if (isJenkins() || isHudson()) {
-                Optional<String> branch = Utils.envVariable("BRANCH_NAME");
-                if (branch.isPresent()) {
-                    return branch.get();
-                }
-            }
-            return gitCommand.get();
-        }
-
-        private boolean isJenkins() {
-            return Utils.envVariable("JENKINS_URL").isPresent();
-        }
-
-        private boolean isHudson() {
-            return Utils.envVariable("HUDSON_URL").isPresent();
-        }
-
-    }
-
-    private void addCustomValueAndSearchLink(String name, String value) {
-        addCustomValueAndSearchLink(name, name, value);
-    }
-
-    private void addCustomValueAndSearchLink(String linkLabel, String name, String value) {
-        addCustomValueAndSearchLink(buildScan, linkLabel, name, value);
-    }
-
-    private static void addCustomValueAndSearchLink(BuildScanApi buildScan, String linkLabel, String name, String value) {
-        buildScan.value(name, value);
-        String server = buildScan.getServer();
-        if (server != null) {
-            String searchParams = "search.names=" + urlEncode(name) + "&search.values=" + urlEncode(value);
-            String url = appendIfMissing(server, "/") + "scans?" + searchParams + "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
-            buildScan.link(linkLabel + " build scans", url);
-        }
-    }
-
-    private Optional<String> projectProperty(String name) {
-        return Utils.projectProperty(mavenSession, name);
     }
 
 }
@@ -0,0 +1,40 @@
+package com.gradle;
+
+import com.gradle.maven.extension.api.scan.BuildScanApi;
+
+import java.util.function.Consumer;
+
+final class MavenBuildScanAdapter implements BuildScanAdapter {
+
+    private final BuildScanApi buildScan;
+
+    MavenBuildScanAdapter(BuildScanApi buildScan) {
+        this.buildScan = buildScan;
+    }
+
+    @Override
+    public void tag(String tag) {
+        buildScan.tag(tag);
+    }
+
+    @Override
+    public void value(String name, String value) {
+        buildScan.value(name, value);
+    }
+
+    @Override
+    public void link(String name, String url) {
+        buildScan.link(name, url);
+    }
+
+    @Override
+    public String getServer() {
+        return buildScan.getServer();
+    }
+
+    @Override
+    public void background(Consumer<? super BuildScanAdapter> action) {
+        buildScan.background(api -> action.accept(new MavenBuildScanAdapter(api)));
+    }
+
+}
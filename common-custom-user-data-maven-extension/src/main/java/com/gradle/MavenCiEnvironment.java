@@ -0,0 +1,45 @@
+package com.gradle;
+
+import org.apache.maven.execution.MavenSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+final class MavenCiEnvironment implements CiEnvironment {
+
+    private final MavenSession mavenSession;
+    private final Map<String, Optional<String>> envVariables = new HashMap<>();
+    private final Map<String, Optional<String>> sysProperties = new HashMap<>();
+
+    MavenCiEnvironment(MavenSession mavenSession) {
+        this.mavenSession = mavenSession;
+    }
+
+    @Override
+    public Optional<String> envVariable(String name) {
+        return envVariables.computeIfAbsent(name, MavenUtils::envVariable);
+    }
+
+    @Override
+    public Optional<String> sysProperty(String name) {
+        return sysProperties.computeIfAbsent(name, MavenUtils::sysProperty);
+    }
+
+    @Override
+    public Optional<String> projectProperty(String name) {
+        return MavenUtils.projectProperty(mavenSession, name);
+    }
+
+    @Override
+    public Properties readPropertiesFile(String name) {
+        return MavenUtils.readPropertiesFile(name);
+    }
+
+    @Override
+    public void withProjectProperties(Runnable action) {
+        action.run();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.gradle;
+
+import org.apache.maven.execution.MavenSession;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+
+final class MavenUtils {
+
+    static Optional<String> envVariable(String name) {
+        return Optional.ofNullable(System.getenv(name));
+    }
+
+    static Optional<String> projectProperty(MavenSession mavenSession, String name) {
+        String value = mavenSession.getSystemProperties().getProperty(name);
+        return Optional.ofNullable(value);
+    }
+
+    static Optional<String> sysProperty(String name) {
+        return Optional.ofNullable(System.getProperty(name));
+    }
+
+    static Optional<Boolean> booleanSysProperty(String name) {
+        return sysProperty(name).map(Boolean::parseBoolean);
+    }
+
+    static Optional<Duration> durationSysProperty(String name) {
+        return sysProperty(name).map(Duration::parse);
+    }
+
+    static Optional<Integer> integerSysProperty(String name) {
+        return sysProperty(name).map(Integer::parseInt);
+    }
+
+    static Optional<String> firstSysPropertyKeyStartingWith(String keyPrefix) {
+        return SystemPropertyKeyIndex.firstKeyStartingWith(keyPrefix);
+    }
+
+    static Properties readPropertiesFile(String name) {
+        try (InputStream input = new FileInputStream(name)) {
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private MavenUtils() {
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.gradle;
+
+import org.apache.maven.execution.MojoExecutionEvent;
+import org.apache.maven.execution.MojoExecutionListener;
+import org.apache.maven.plugin.Mojo;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.File;
+import java.lang.reflect.Field;
+
+/**
+ * Records the XML report of each quality check goal as soon as the goal has run, and passes it on to be read in the
+ * background.
+ * <p>
+ * The location of a report is read from the configured mojo instance that wrote it, so the execution plan of the build
+ * does not need to be calculated again, nor do the mojos need to be looked up and configured again once the build has
+ * finished.
+ */
+@Component(
+    role = MojoExecutionListener.class,
+    hint = QualityReportListener.HINT,
+    description = "Records the reports of quality check goals for common custom user data"
+)
+public final class QualityReportListener implements MojoExecutionListener {
+
+    static final String HINT = "common-custom-user-data-quality-reports";
+
+    private volatile QualityIssues issues;
+
+    /**
+     * Starts passing the reports of the goals that run from now on to the given issues.
+     */
+    void collectInto(QualityIssues issues) {
+        this.issues = issues;
+    }
+
+    @Override
+    public void beforeMojoExecution(MojoExecutionEvent event) {
+    }
+
+    @Override
+    public void afterMojoExecutionSuccess(MojoExecutionEvent event) {
+        collect(event);
+    }
+
+    @Override
+    public void afterExecutionFailure(MojoExecutionEvent event) {
+        // goals like checkstyle:check fail the build after they have written their report
+        collect(event);
+    }
+
+    private void collect(MojoExecutionEvent event) {
+        QualityIssues issues = this.issues;
+        if (issues == null || event.getMojo() == null) {
+            return;
+        }
+
+        Mojo mojo = event.getMojo();
+        switch (event.getExecution().getGroupId() + ":" + event.getExecution().getArtifactId()) {
+            case "org.apache.maven.plugins:maven-checkstyle-plugin":
+                if ("xml".equals(fieldValue(mojo, "outputFileFormat"))) {
+                    collect(issues, QualityReportFormat.CHECKSTYLE, fieldValue(mojo, "outputFile"), null);
+                }
+                break;
+            case "org.codehaus.mojo:codenarc-maven-plugin":
+                collect(issues, QualityReportFormat.CODENARC, fieldValue(mojo, "xmlOutputDirectory"), "CodeNarc.xml");
+                break;
+            case "org.codehaus.mojo:findbugs-maven-plugin":
+                if (Boolean.TRUE.equals(fieldValue(mojo, "xmlOutput"))) {
+                    collect(issues, QualityReportFormat.FINDBUGS, fieldValue(mojo, "xmlOutputDirectory"), "findbugsXml.xml");
+                }
+                break;
+            case "com.github.spotbugs:spotbugs-maven-plugin":
+                if (Boolean.TRUE.equals(fieldValue(mojo, "xmlOutput"))) {
+                    collect(issues, QualityReportFormat.SPOTBUGS, fieldValue(mojo, "xmlOutputDirectory"), "spotbugsXml.xml");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void collect(QualityIssues issues, QualityReportFormat format, Object location, String fileName) {
+        if (location instanceof File) {
+            issues.collect(format, fileName != null ? new File((File) location, fileName) : (File) location);
+        }
+    }
+
+    private static Object fieldValue(Mojo mojo, String name) {
+        // the parameters of the mojos are private fields, possibly declared by an abstract superclass
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(mojo);
+            } catch (NoSuchFieldException ignored) {
+                // continue with the superclass
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+}
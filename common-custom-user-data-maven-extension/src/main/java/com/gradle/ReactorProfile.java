@@ -0,0 +1,168 @@
+package com.gradle;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Records the wall time of each goal and module of the reactor, and the time each module waited for its upstream
+ * modules to be built.
+ * <p>
+ * Recording is lock-free, so the modules built concurrently by a multi-threaded build do not contend with each other:
+ * the start times of the mojos are kept per thread, since a mojo starts and ends on the same thread, and the times of
+ * the goals are summed in atomic counters. Deriving the waiting times and sorting the results only happens once the
+ * build has finished.
+ */
+final class ReactorProfile {
+
+    private final long buildStartNanos = System.nanoTime();
+    private final Map<String, GoalTiming> goals = new ConcurrentHashMap<>();
+    private final Map<MavenProject, ModuleTiming> modules = new ConcurrentHashMap<>();
+    private final ThreadLocal<StartTimes> mojoStartTimes = ThreadLocal.withInitial(StartTimes::new);
+
+    void projectStarted(MavenProject project) {
+        modules.put(project, new ModuleTiming(System.nanoTime()));
+    }
+
+    void projectFinished(MavenProject project) {
+        ModuleTiming module = modules.get(project);
+        if (module != null) {
+            module.finished(System.nanoTime());
+        }
+    }
+
+    void mojoStarted() {
+        // forked executions start mojos while the forking mojo is still running
+        mojoStartTimes.get().push(System.nanoTime());
+    }
+
+    void mojoFinished(MojoExecution mojoExecution) {
+        StartTimes startTimes = mojoStartTimes.get();
+        if (startTimes.isEmpty()) {
+            return;
+        }
+
+        long durationNanos = System.nanoTime() - startTimes.pop();
+        String goal = mojoExecution.getArtifactId() + ":" + mojoExecution.getGoal();
+        GoalTiming timing = goals.get(goal);
+        if (timing == null) {
+            timing = goals.computeIfAbsent(goal, g -> new GoalTiming());
+        }
+        timing.record(durationNanos);
+    }
+
+    /**
+     * Passes the slowest goals, by summed wall time, and the slowest modules, by wall time, to the given consumer as
+     * custom values.
+     */
+    void report(MavenSession session, int slowest, BiConsumer<String, String> customValues) {
+        goals.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<String, GoalTiming> e) -> e.getValue().totalNanos.sum()).reversed())
+            .limit(slowest)
+            .forEach(e -> customValues.accept("Slowest goal", e.getKey() + " (" + e.getValue() + ")"));
+
+        modules.entrySet().stream()
+            .filter(e -> e.getValue().isFinished())
+            .sorted(Comparator.comparingLong((Map.Entry<MavenProject, ModuleTiming> e) -> e.getValue().wallNanos()).reversed())
+            .limit(slowest)
+            .forEach(e -> customValues.accept("Slowest module", e.getKey().getArtifactId()
+                + " (wall=" + formatNanos(e.getValue().wallNanos())
+                + ", upstreamWait=" + formatNanos(upstreamWaitNanos(session, e.getKey())) + ")"));
+    }
+
+    private long upstreamWaitNanos(MavenSession session, MavenProject project) {
+        // the time from the start of the build until the last upstream module was built
+        List<MavenProject> upstreamProjects = session.getProjectDependencyGraph().getUpstreamProjects(project, false);
+        long lastUpstreamEndNanos = buildStartNanos;
+        for (MavenProject upstreamProject : upstreamProjects) {
+            ModuleTiming upstream = modules.get(upstreamProject);
+            if (upstream != null && upstream.isFinished()) {
+                lastUpstreamEndNanos = Math.max(lastUpstreamEndNanos, upstream.endNanos);
+            }
+        }
+        return Math.max(0, lastUpstreamEndNanos - buildStartNanos);
+    }
+
+    private static String formatNanos(long nanos) {
+        return formatSeconds(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private static final class GoalTiming {
+
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long durationNanos) {
+            totalNanos.add(durationNanos);
+            count.increment();
+            maxNanos.accumulateAndGet(durationNanos, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            return "total=" + formatNanos(totalNanos.sum()) + ", count=" + count.sum() + ", max=" + formatNanos(maxNanos.get());
+        }
+
+    }
+
+    private static final class ModuleTiming {
+
+        private final long startNanos;
+        private long endNanos;
+        private volatile boolean finished; // publishes the end time to the threads of other modules
+
+        private ModuleTiming(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void finished(long endNanos) {
+            this.endNanos = endNanos;
+            this.finished = true;
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        long wallNanos() {
+            return endNanos - startNanos;
+        }
+
+    }
+
+    private static final class StartTimes {
+
+        private long[] nanos = new long[4];
+        private int size;
+
+        void push(long startNanos) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = startNanos;
+        }
+
+        long pop() {
+            return nanos[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+    }
+
+}
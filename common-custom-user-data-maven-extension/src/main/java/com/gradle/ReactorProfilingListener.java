@@ -0,0 +1,54 @@
+package com.gradle;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+
+/**
+ * Passes the start and end of the modules and mojos of the build to a {@link ReactorProfile}.
+ */
+final class ReactorProfilingListener extends ForwardingExecutionListener {
+
+    private final ReactorProfile profile;
+
+    ReactorProfilingListener(ExecutionListener delegate, ReactorProfile profile) {
+        super(delegate);
+        this.profile = profile;
+    }
+
+    @Override
+    public void projectStarted(ExecutionEvent event) {
+        profile.projectStarted(event.getProject());
+        super.projectStarted(event);
+    }
+
+    @Override
+    public void projectSucceeded(ExecutionEvent event) {
+        super.projectSucceeded(event);
+        profile.projectFinished(event.getProject());
+    }
+
+    @Override
+    public void projectFailed(ExecutionEvent event) {
+        super.projectFailed(event);
+        profile.projectFinished(event.getProject());
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        profile.mojoStarted();
+        super.mojoStarted(event);
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        super.mojoSucceeded(event);
+        profile.mojoFinished(event.getMojoExecution());
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        super.mojoFailed(event);
+        profile.mojoFinished(event.getMojoExecution());
+    }
+
+}
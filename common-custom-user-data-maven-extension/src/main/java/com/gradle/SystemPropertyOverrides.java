@@ -4,7 +4,7 @@ import com.gradle.maven.extension.api.cache.BuildCacheApi;
 import com.gradle.maven.extension.api.cache.Server;
 
 import static com.gradle.Utils.appendPathAndTrailingSlash;
-import static com.gradle.Utils.sysProperty;
+import static com.gradle.MavenUtils.sysProperty;
 
 /**
  * Provide standardized Gradle Enterprise configuration.
@@ -0,0 +1,43 @@
+package com.gradle;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+
+/**
+ * Passes the start and end of the mojos of the build to a {@link ThreadUtilizationSampler}, and stops the sampling when
+ * the session ends.
+ */
+final class ThreadUtilizationListener extends ForwardingExecutionListener {
+
+    private final ThreadUtilizationSampler sampler;
+
+    ThreadUtilizationListener(ExecutionListener delegate, ThreadUtilizationSampler sampler) {
+        super(delegate);
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        sampler.mojoStarted(event.getProject());
+        super.mojoStarted(event);
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        super.mojoSucceeded(event);
+        sampler.mojoFinished();
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        super.mojoFailed(event);
+        sampler.mojoFinished();
+    }
+
+    @Override
+    public void sessionEnded(ExecutionEvent event) {
+        sampler.stop();
+        super.sessionEnded(event);
+    }
+
+}
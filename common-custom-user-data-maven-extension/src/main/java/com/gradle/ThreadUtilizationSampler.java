@@ -0,0 +1,126 @@
+package com.gradle;
+
+import org.apache.maven.project.MavenProject;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.gradle.Utils.formatSeconds;
+
+/**
+ * Samples at a fixed interval how many of the builder threads of the reactor are busy executing a mojo and how many are
+ * idle, e.g. because the remaining modules wait for their upstream modules to be built.
+ * <p>
+ * A builder thread is busy from the start to the end of each mojo it executes, including the mojos of forked executions,
+ * which start while the forking mojo is still running on the same thread. The time a thread spends on a module between
+ * two mojos is not counted as busy.
+ * <p>
+ * The modules whose mojos are executed while all other builder threads are idle serialize the build, and the number of
+ * samples taken while each of them was the only module executing a mojo is counted. All sampling state is only accessed
+ * by the sampling thread, and read once the sampling has stopped.
+ */
+final class ThreadUtilizationSampler {
+
+    private static final int REPORTED_SERIALIZING_MODULES = 5;
+
+    private final int threads;
+    private final Duration interval;
+    private final Map<Thread, BusyThread> busyThreads = new ConcurrentHashMap<>();
+    private final Map<String, Long> serializingModuleSamples = new HashMap<>();
+    private ScheduledExecutorService sampler;
+    private long samples;
+    private long busyThreadSamples;
+
+    ThreadUtilizationSampler(int threads, Duration interval) {
+        this.threads = threads;
+        this.interval = interval;
+    }
+
+    synchronized void start() {
+        sampler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("common-custom-user-data-thread-sampler-"));
+        sampler.scheduleAtFixedRate(this::sample, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    void mojoStarted(MavenProject project) {
+        // a mojo starts and ends on the same thread
+        BusyThread thread = busyThreads.computeIfAbsent(Thread.currentThread(), t -> new BusyThread(project));
+        thread.runningMojos++;
+    }
+
+    void mojoFinished() {
+        BusyThread thread = busyThreads.get(Thread.currentThread());
+        if (thread != null && --thread.runningMojos == 0) {
+            busyThreads.remove(Thread.currentThread());
+        }
+    }
+
+    synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            try {
+                // waiting for the sampling thread makes its state visible to the reporting thread
+                sampler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sampler = null;
+        }
+    }
+
+    /**
+     * Stops the sampling and passes the utilization of the builder threads and the modules that serialized the build to
+     * the given consumer as custom values.
+     */
+    synchronized void report(BiConsumer<String, String> customValues) {
+        stop();
+        if (samples == 0) {
+            return;
+        }
+
+        long idleThreadSamples = samples * threads - busyThreadSamples;
+        customValues.accept("Builder thread utilization", "threads=" + threads
+            + ", average=" + Math.round(100.0 * busyThreadSamples / (samples * threads)) + "%"
+            + ", idle=" + String.format(Locale.ROOT, "%.1f", idleThreadSamples * (interval.toNanos() / 1_000_000_000.0)) + " thread-seconds");
+        if (threads > 1) {
+            serializingModuleSamples.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(REPORTED_SERIALIZING_MODULES)
+                .forEach(e -> customValues.accept("Serializing module", e.getKey() + " (" + formatSeconds(TimeUnit.NANOSECONDS.toMillis(e.getValue() * interval.toNanos())) + ")"));
+        }
+    }
+
+    private void sample() {
+        int busy = 0;
+        MavenProject firstRunningModule = null;
+        for (BusyThread thread : busyThreads.values()) {
+            if (busy++ == 0) {
+                firstRunningModule = thread.module;
+            }
+        }
+
+        samples++;
+        busyThreadSamples += Math.min(busy, threads);
+        if (busy == 1) {
+            serializingModuleSamples.merge(firstRunningModule.getArtifactId(), 1L, Long::sum);
+        }
+    }
+
+    private static final class BusyThread {
+
+        private final MavenProject module;
+        private int runningMojos; // only accessed by the builder thread itself
+
+        private BusyThread(MavenProject module) {
+            this.module = module;
+        }
+
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.gradle;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactorProfileTest {
+
+    @AfterEach
+    void removeTestProperties() {
+        System.clearProperty(CustomBuildScanEnhancements.MOJO_PROFILE_SLOWEST);
+    }
+
+    @Test
+    void capturesNothingForNegativeNumberOfSlowestGoalsAndModules() {
+        System.setProperty(CustomBuildScanEnhancements.MOJO_PROFILE_SLOWEST, "-1");
+
+        int slowest = CustomBuildScanEnhancements.mojoProfileSlowest();
+        List<String> customValues = new ArrayList<>();
+        new ReactorProfile().report(null, slowest, (name, value) -> customValues.add(name));
+
+        assertEquals(0, slowest);
+        assertTrue(customValues.isEmpty(), () -> "captured " + customValues);
+    }
+
+    @Test
+    void defaultsToTenSlowestGoalsAndModules() {
+        assertEquals(10, CustomBuildScanEnhancements.mojoProfileSlowest());
+    }
+
+}
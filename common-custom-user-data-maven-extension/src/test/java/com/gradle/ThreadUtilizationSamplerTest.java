@@ -0,0 +1,57 @@
+package com.gradle;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadUtilizationSamplerTest {
+
+    @Test
+    void countsThreadsExecutingMojosAtSubMillisecondInterval() throws InterruptedException {
+        ThreadUtilizationSampler sampler = new ThreadUtilizationSampler(2, Duration.ofNanos(500_000));
+        MavenProject module = new MavenProject();
+        module.setArtifactId("core");
+
+        sampler.start();
+        sampler.mojoStarted(module);
+        // a forked execution starts a mojo while the forking mojo is still running
+        sampler.mojoStarted(module);
+        sampler.mojoFinished();
+        Thread.sleep(200);
+        sampler.mojoFinished();
+        Map<String, String> customValues = new LinkedHashMap<>();
+        sampler.report(customValues::put);
+
+        String utilization = customValues.get("Builder thread utilization");
+        assertTrue(utilization.startsWith("threads=2, average="), utilization);
+        assertNotEquals("0.0", utilization.replaceAll(".*idle=([0-9.]+) thread-seconds", "$1"), utilization);
+        String serializingModule = customValues.get("Serializing module");
+        assertTrue(serializingModule.startsWith("core ("), serializingModule);
+        assertNotEquals("core (0.0s)", serializingModule);
+    }
+
+    @Test
+    void doesNotCountThreadBetweenMojosAsBusy() throws InterruptedException {
+        ThreadUtilizationSampler sampler = new ThreadUtilizationSampler(1, Duration.ofMillis(1));
+        MavenProject module = new MavenProject();
+        module.setArtifactId("core");
+
+        sampler.mojoStarted(module);
+        sampler.mojoFinished();
+        sampler.start();
+        Thread.sleep(100);
+        Map<String, String> customValues = new LinkedHashMap<>();
+        sampler.report(customValues::put);
+
+        assertTrue(customValues.get("Builder thread utilization").startsWith("threads=1, average=0%"), customValues.toString());
+        assertEquals(1, customValues.size());
+    }
+
+}